@@ -0,0 +1,96 @@
+package com.chenjj.java8.sort;
+
+import com.chenjj.java8.model.Apple;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按重量（以及重量逆序、颜色）给苹果排序
+ * <p>
+ * listSort        —— List.sort(comparing(Apple::getWeight))，TimSort，每次比较调用两次getWeight并拆箱
+ * parallelSort    —— Arrays.parallelSort，同样的比较器，并行归并
+ * radix           —— RadixSort.sortByInt，单线程
+ * radixParallel   —— RadixSort.sortByInt，取键、每一趟分发和最后的重排都并行
+ * chainListSort   —— List.sort(comparing(Apple::getWeight).reversed().thenComparing(Apple::getColor))
+ * chainKeyed      —— KeyedSorter，同样的比较器链，每个取键函数对每个苹果只调用一次
+ * 每次调用前都把数组恢复成同样的乱序
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SortBenchmark {
+    @Param({"1000000", "10000000"})
+    private int size;
+
+    private Apple[] source;
+    private Apple[] apples;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        source = new Apple[size];
+        for (int i = 0; i < size; i++) {
+            source[i] = new Apple(random.nextInt(1_000_000), i % 2 == 0 ? "red" : "green");
+        }
+        apples = new Apple[size];
+    }
+
+    @Setup(Level.Invocation)
+    public void shuffle() {
+        System.arraycopy(source, 0, apples, 0, size);
+    }
+
+    @Benchmark
+    public Apple[] listSort() {
+        Arrays.asList(apples).sort(Comparator.comparing(Apple::getWeight));
+        return apples;
+    }
+
+    @Benchmark
+    public Apple[] parallelSort() {
+        Arrays.parallelSort(apples, Comparator.comparing(Apple::getWeight));
+        return apples;
+    }
+
+    @Benchmark
+    public Apple[] radix() {
+        RadixSort.sortByInt(apples, Apple::getWeight, false);
+        return apples;
+    }
+
+    @Benchmark
+    public Apple[] radixParallel() {
+        RadixSort.sortByInt(apples, Apple::getWeight, true);
+        return apples;
+    }
+
+    @Benchmark
+    public Apple[] chainListSort() {
+        Arrays.asList(apples).sort(Comparator.comparing(Apple::getWeight).reversed().thenComparing(Apple::getColor));
+        return apples;
+    }
+
+    @Benchmark
+    public Apple[] chainKeyed() {
+        KeyedSorter.comparing(Apple::getWeight).reversed().thenComparing(Apple::getColor).sort(apples);
+        return apples;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SortBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
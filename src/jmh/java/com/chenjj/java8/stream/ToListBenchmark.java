@@ -0,0 +1,72 @@
+package com.chenjj.java8.stream;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 并行流收集到List的几种方式
+ * <p>
+ * toListCollector      —— ToListCollector，每个拆分一个ArrayList，combiner中addAll复制
+ * collectorsToList     —— Collectors.toList()，和上面相同的合并方式
+ * concurrent           —— ConcurrentToListCollector，所有线程追加到同一个分块缓冲区
+ * concurrentPresized   —— ConcurrentToListCollector.toList，按estimateSize确定第一个块的大小
+ * sized                —— SizedCollectors.toList，SUBSIZED的流直接写入共享数组中各自的一段
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ToListBenchmark {
+    @Param({"100000", "10000000"})
+    private int size;
+
+    private Integer[] values;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = IntStream.range(0, size).boxed().toArray(Integer[]::new);
+    }
+
+    @Benchmark
+    public List<Integer> toListCollector() {
+        return Arrays.stream(values).parallel().collect(new ToListCollector<>());
+    }
+
+    @Benchmark
+    public List<Integer> collectorsToList() {
+        return Arrays.stream(values).parallel().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Integer> concurrent() {
+        return Arrays.stream(values).parallel().collect(new ConcurrentToListCollector<>());
+    }
+
+    @Benchmark
+    public List<Integer> concurrentPresized() {
+        return ConcurrentToListCollector.toList(Arrays.stream(values).parallel());
+    }
+
+    @Benchmark
+    public List<Integer> sized() {
+        return SizedCollectors.toList(Arrays.stream(values).parallel());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ToListBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
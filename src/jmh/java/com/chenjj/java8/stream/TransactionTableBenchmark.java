@@ -0,0 +1,87 @@
+package com.chenjj.java8.stream;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 同样的查询在List&lt;Transaction&gt;和按列存储的TransactionTable上的对比
+ * <p>
+ * xxxObjects —— PuttingIntoPractice中的写法，在对象列表上用流查询
+ * xxxTable   —— TransactionTable的扫描操作
+ * 测试1亿行需要较大的堆：-p rows=100000000 -jvmArgs -Xmx16g
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionTableBenchmark {
+    @Param({"1000000"})
+    private int rows;
+
+    private List<Transaction> transactions;
+    private TransactionTable table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] cities = {"Cambridge", "Milan", "Paris", "Rome", "Beijing"};
+        List<Trader> traders = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            traders.add(new Trader("Trader" + i, cities[random.nextInt(cities.length)]));
+        }
+        transactions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            transactions.add(new Transaction(traders.get(random.nextInt(traders.size())),
+                    2000 + random.nextInt(20), random.nextInt(1000)));
+        }
+        table = TransactionTable.from(transactions);
+    }
+
+    @Benchmark
+    public long sumInYearObjects() {
+        return transactions.stream().filter(t -> t.getYear() == 2011).mapToLong(Transaction::getValue).sum();
+    }
+
+    @Benchmark
+    public long sumInYearTable() {
+        return table.sumValueInYear(2011);
+    }
+
+    @Benchmark
+    public int maxValueObjects() {
+        return transactions.stream().map(Transaction::getValue).reduce(Integer::max).get();
+    }
+
+    @Benchmark
+    public int maxValueTable() {
+        return table.maxValue().getAsInt();
+    }
+
+    @Benchmark
+    public List<String> distinctCitiesObjects() {
+        return transactions.stream().map(t -> t.getTrader().getCity()).distinct().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> distinctCitiesTable() {
+        return table.distinctCities();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(TransactionTableBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.chenjj.java8.stream.parallel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * 并行forEach中各种累加器在不同核数下的竞争开销
+ * <p>
+ * naive        —— Accumulator，total += value存在数据竞争，结果是错的，只作为没有同步开销的下限
+ * atomic       —— AtomicAccumulator，所有线程CAS同一个AtomicLong
+ * striped      —— StripedAccumulator，LongAdder式的分段单元
+ * stripedMax   —— StripedOperatorAccumulator(Math::max)，LongAccumulator式的任意运算
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccumulatorBenchmark {
+    @Param({"1000000"})
+    private long n;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long naive() {
+        return pool.submit(() -> {
+            Accumulator accumulator = new Accumulator();
+            LongStream.rangeClosed(1, n).parallel().forEach(accumulator::add);
+            return accumulator.total;
+        }).join();
+    }
+
+    @Benchmark
+    public long atomic() {
+        return pool.submit(() -> {
+            AtomicAccumulator accumulator = new AtomicAccumulator();
+            LongStream.rangeClosed(1, n).parallel().forEach(accumulator::add);
+            return accumulator.getTotal();
+        }).join();
+    }
+
+    @Benchmark
+    public long striped() {
+        return pool.submit(() -> {
+            StripedAccumulator accumulator = new StripedAccumulator();
+            LongStream.rangeClosed(1, n).parallel().forEach(accumulator::add);
+            return accumulator.getTotal();
+        }).join();
+    }
+
+    @Benchmark
+    public long stripedMax() {
+        return pool.submit(() -> {
+            StripedOperatorAccumulator accumulator = new StripedOperatorAccumulator(Math::max, Long.MIN_VALUE);
+            LongStream.rangeClosed(1, n).parallel().forEach(accumulator::add);
+            return accumulator.getTotal();
+        }).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AccumulatorBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
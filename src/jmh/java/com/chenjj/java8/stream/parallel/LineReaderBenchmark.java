@@ -0,0 +1,101 @@
+package com.chenjj.java8.stream.parallel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 逐行读取文本文件：Files.lines和FastLines的对比，每一行只取长度求和
+ * <p>
+ * filesLines          —— Files.lines，顺序流
+ * filesLinesParallel  —— Files.lines，并行流
+ * fastLines           —— FastLines.lines，顺序流，重复使用同一个CharSequence
+ * fastLinesParallel   —— FastLines.lines，并行流
+ * fastLineStrings     —— FastLines.lineStrings，每一行都复制成String
+ * 默认的文件大小只有100M，测试10G的文件需要足够的磁盘空间：-p fileSize=10737418240
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineReaderBenchmark {
+    @Param({"104857600"})
+    private long fileSize;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("lines", ".txt");
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            long written = 0;
+            while (written < fileSize) {
+                String line = WordCountBenchmark.randomText(20 + random.nextInt(100), random).replace('\n', ' ');
+                writer.write(line);
+                writer.newLine();
+                written += line.length() + 1;
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long filesLines() throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.mapToLong(String::length).sum();
+        }
+    }
+
+    @Benchmark
+    public long filesLinesParallel() throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.parallel().mapToLong(String::length).sum();
+        }
+    }
+
+    @Benchmark
+    public long fastLines() throws IOException {
+        try (Stream<CharSequence> lines = FastLines.lines(file)) {
+            return lines.mapToLong(CharSequence::length).sum();
+        }
+    }
+
+    @Benchmark
+    public long fastLinesParallel() throws IOException {
+        try (Stream<CharSequence> lines = FastLines.lines(file)) {
+            return lines.parallel().mapToLong(CharSequence::length).sum();
+        }
+    }
+
+    @Benchmark
+    public long fastLineStrings() throws IOException {
+        try (Stream<String> lines = FastLines.lineStrings(file)) {
+            return lines.mapToLong(String::length).sum();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LineReaderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.chenjj.java8.stream.parallel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * RangeSums与ParallelStream中原有的三种求和方式的对比
+ * <p>
+ * 前四个基准都是求1~n的和；后面的基准对每个元素求平方后再求和：
+ * squaresSimpleLoop        —— 直接在循环里写i * i，只有一个累加器
+ * squaresSingleAccumulator —— 和RangeSums.sum一样通过LongUnaryOperator调用i -> i * i，但只有一个累加器
+ * squaresUnrolled          —— RangeSums.sum，4路展开、4个累加器
+ * 后两个只差在累加器的个数上，比较它们才能看出多个累加器的效果；第一个和第二个的差别是函数调用的开销。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RangeSumBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    private long n;
+
+    @Benchmark
+    public long iterativeSum() {
+        return ParallelStream.iterativeSum(n);
+    }
+
+    @Benchmark
+    public long sequentialSum() {
+        return ParallelStream.sequentialSum(n);
+    }
+
+    @Benchmark
+    public long parallelSum() {
+        return ParallelStream.parallelSum(n);
+    }
+
+    @Benchmark
+    public long closedFormSum() {
+        return ParallelStream.closedFormSum(n);
+    }
+
+    @Benchmark
+    public long squaresSimpleLoop() {
+        long sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += i * i;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long squaresSingleAccumulator() {
+        return sumSingleAccumulator(1, n, 1, i -> i * i);
+    }
+
+    @Benchmark
+    public long squaresUnrolled() {
+        return RangeSums.sum(1, n, 1, i -> i * i);
+    }
+
+    // 和RangeSums.sum相同的参数和遍历方式，只是不展开，所有的加法都累加到同一个变量上
+    private static long sumSingleAccumulator(long first, long last, long step, LongUnaryOperator f) {
+        long count = RangeSums.count(first, last, step);
+        long sum = 0;
+        long i = first;
+        for (long k = 0; k < count; k++) {
+            sum += f.applyAsLong(i);
+            i += step;
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RangeSumBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,80 @@
+package com.chenjj.java8.stream.parallel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同拆分策略下ForkJoinSumCalculator从1个核到N个核的伸缩曲线
+ * <p>
+ * 对每个parallelism都新建一个对应并行度的ForkJoinPool，把得分按parallelism排列就是伸缩曲线。
+ * 默认的parallelism取值覆盖到64核，在核数更少的机器上可以用 -p parallelism=1,2,4,8 覆盖。
+ * policy的取值：
+ * fixed       —— 原来的固定阈值THRESHOLD
+ * parallelism —— SplitPolicy.defaultPolicy，阈值由数组长度和并行度推导
+ * surplus     —— 根据getSurplusQueuedTaskCount()自适应拆分
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SplitPolicyBenchmark {
+    @Param({"100000", "10000000", "100000000"})
+    private int size;
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    private int parallelism;
+
+    @Param({"fixed", "parallelism", "surplus"})
+    private String policy;
+
+    private long[] numbers;
+    private ForkJoinPool pool;
+    private SplitPolicy splitPolicy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        numbers = new long[size];
+        for (int i = 0; i < size; i++) {
+            numbers[i] = i + 1;
+        }
+        pool = new ForkJoinPool(parallelism);
+        switch (policy) {
+            case "fixed":
+                splitPolicy = SplitPolicy.fixed(ForkJoinSumCalculator.THRESHOLD);
+                break;
+            case "parallelism":
+                splitPolicy = SplitPolicy.defaultPolicy(size, parallelism);
+                break;
+            case "surplus":
+                splitPolicy = SplitPolicy.surplus(3, 1_000);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long arraySum() {
+        return pool.invoke(new ForkJoinSumCalculator(numbers, 0, numbers.length, splitPolicy));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SplitPolicyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
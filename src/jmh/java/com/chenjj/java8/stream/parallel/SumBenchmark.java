@@ -0,0 +1,115 @@
+package com.chenjj.java8.stream.parallel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用JMH替代ParallelStream.measureSumPerf对各种求和方式做基准测试
+ * <p>
+ * measureSumPerf只是用System.nanoTime()跑10次取最快的一次，没有预热、没有fork新的JVM，
+ * 结果也没有交给Blackhole，JIT完全可能把计算当作死码删掉，所以得到的毫秒数不能代表生产环境。
+ * 这里每个求和方法都在独立fork的JVM中预热后再测量，同时报告：
+ * 1、Throughput：每秒完成的求和次数；
+ * 2、SampleTime：单次调用耗时的分布（p50、p90、p99等百分位）；
+ * 3、通过GCProfiler报告的分配速率（gc.alloc.rate.norm即每次调用分配的字节数）。
+ * <p>
+ * 并行的求和方法都提交到一个并行度为parallelism的ForkJoinPool中执行，在任务内部启动的
+ * 并行流会使用当前所在的ForkJoinPool而不是公共线程池，这样就可以观察不同线程数下的伸缩情况。
+ * <p>
+ * 运行方式：mvn -Pjmh package && java -jar target/benchmarks.jar SumBenchmark -prof gc，
+ * 或者直接运行本类的main方法。GCProfiler只在main方法中通过addProfiler加上，
+ * 用benchmarks.jar运行时必须自己加上-prof gc，否则结果里没有分配速率。
+ * <p>
+ * forkJoinSum直接在同一个线程池上执行，并通过辅助计数器报告每秒的任务窃取次数（steals），
+ * 每轮测量结束时还会打印线程池的状态快照（排队任务数、活跃线程数、累计窃取次数）。
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SumBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    private long n;
+
+    @Param({"1", "2", "4", "8"})
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPoolStats() {
+        System.out.println(ForkJoinPools.stats(pool));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * 以OPERATIONS方式报告的辅助计数器，JMH会把它换算成和主指标同一单位的速率
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class PoolCounters {
+        public long steals;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            steals = 0;
+        }
+    }
+
+    @Benchmark
+    public long iterativeSum() {
+        return ParallelStream.iterativeSum(n);
+    }
+
+    @Benchmark
+    public long sequentialSum() {
+        return ParallelStream.sequentialSum(n);
+    }
+
+    @Benchmark
+    public long parallelSum() {
+        return pool.submit(() -> ParallelStream.parallelSum(n)).join();
+    }
+
+    /**
+     * sideEffectSum的结果是错的，测量它只是为了和正确的实现对比开销
+     */
+    @Benchmark
+    public long sideEffectSum() {
+        return pool.submit(() -> ParallelStream.sideEffectSum(n)).join();
+    }
+
+    @Benchmark
+    public long forkJoinSum(PoolCounters counters) {
+        long stealsBefore = pool.getStealCount();
+        long sum = ForkJoinSumCalculator.forkJoinSum(n, pool);
+        counters.steals += pool.getStealCount() - stealsBefore;
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SumBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.chenjj.java8.stream.parallel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.StreamSupport;
+
+/**
+ * 各种单词计数方式的对比
+ * <p>
+ * iteratively            —— WordCounterSpliterator.countWordsIteratively，顺序循环
+ * spliteratorSequential  —— WordCounterSpliterator + Stream&lt;Character&gt;，顺序流
+ * spliteratorParallel    —— WordCounterSpliterator + Stream&lt;Character&gt;，并行流
+ * primitiveSequential    —— WordCounter.countWords(CharSequence)，不装箱
+ * primitiveParallel      —— WordCounter.countWordsInParallel(CharSequence)，IntStream并行归约
+ * asciiSwar              —— AsciiWordCounter.countWords(byte[])，一次检查8个字节
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WordCountBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    private int length;
+
+    private String text;
+    private byte[] utf8;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        text = randomText(length, new Random(42));
+        utf8 = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String randomText(int length, Random random) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            int wordLength = 1 + random.nextInt(10);
+            for (int i = 0; i < wordLength && sb.length() < length; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            if (sb.length() < length) {
+                sb.append(random.nextInt(10) == 0 ? '\n' : ' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public int iteratively() {
+        return WordCounterSpliterator.countWordsIteratively(text);
+    }
+
+    @Benchmark
+    public int spliteratorSequential() {
+        return WordCounter.countWords(StreamSupport.stream(new WordCounterSpliterator(text), false));
+    }
+
+    @Benchmark
+    public int spliteratorParallel() {
+        return WordCounter.countWords(StreamSupport.stream(new WordCounterSpliterator(text), true));
+    }
+
+    @Benchmark
+    public int primitiveSequential() {
+        return WordCounter.countWords((CharSequence) text);
+    }
+
+    @Benchmark
+    public int primitiveParallel() {
+        return WordCounter.countWordsInParallel(text);
+    }
+
+    @Benchmark
+    public long asciiSwar() {
+        return AsciiWordCounter.countWords(utf8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(WordCountBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,6 +1,8 @@
 package com.chenjj.java8.lambda.methodReference;
 
 import com.chenjj.java8.model.Apple;
+import com.chenjj.java8.sort.KeyedSorter;
+import com.chenjj.java8.sort.RadixSort;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -83,6 +85,13 @@ public class AppleSorting {
 
         // 按重量逆序，如果重量一致那就按颜色排序
         apples.sort(Comparator.comparing(Apple::getWeight).reversed().thenComparing(Apple::getColor));
+        // 同样的顺序，但getWeight和getColor对每个苹果只调用一次，取键开销大时更划算
+        KeyedSorter.comparing(Apple::getWeight).reversed().thenComparing(Apple::getColor).sort(apples);
+        System.out.println(apples);
+
+        // 按重量排序时每次比较都要调用getWeight并拆箱；基数排序只对每个苹果取一次重量，不需要比较
+        RadixSort.sortByInt(apples, Apple::getWeight);
+        System.out.println(apples);
 
         Apple apple = new Apple(30, "red");
         Predicate<Apple> redApple = (a -> "red".equals(apple.getColor()));
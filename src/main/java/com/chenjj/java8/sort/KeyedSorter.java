@@ -0,0 +1,314 @@
+package com.chenjj.java8.sort;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 先取键再排序（decorate-sort-undecorate）的比较器链
+ * <p>
+ * apples.sort(Comparator.comparing(Apple::getWeight).reversed().thenComparing(Apple::getColor))
+ * 每次比较都要重新调用getWeight，重量相同时还要调用getColor，一共要比较O(n log n)次。
+ * KeyedSorter的写法和Comparator一样：
+ * KeyedSorter.comparing(Apple::getWeight).reversed().thenComparing(Apple::getColor).sort(apples)
+ * 但排序分成三步，每个取键函数对每个元素只调用一次：
+ * 1、decorate：按列取出所有元素的键，再把每一列的键换成它在这一列中的名次（相等的键名次相同，
+ * 逆序的列名次倒过来），名次只需要ceil(log2(不同键的个数))位。对象键先用HashMap去重，
+ * 只对不同的键排序，所以要求equals相等的键比较结果也相等；int键直接用RadixSort排序；
+ * 2、sort：把各列的名次从高到低依次拼起来，最低位放元素原来的下标，打包成一个long，对long[]排序。
+ * 下标各不相同，所以排序结果是确定的，键相同的元素也保持原来的顺序，和List.sort一样是稳定的；
+ * 3、undecorate：从排好序的long中取出下标，按下标重新排列元素。
+ * 所有列的名次加上下标超过63位时放不进一个long，这时退回到按下标比较名次数组的排序，
+ * 仍然不会再调用取键函数。
+ *
+ * @param <T>
+ */
+public final class KeyedSorter<T> {
+    private final List<Column<T>> columns;
+
+    private KeyedSorter(List<Column<T>> columns) {
+        this.columns = columns;
+    }
+
+    public static <T, U extends Comparable<? super U>> KeyedSorter<T> comparing(Function<? super T, ? extends U> keyExtractor) {
+        return comparing(keyExtractor, Comparator.naturalOrder());
+    }
+
+    public static <T, U> KeyedSorter<T> comparing(Function<? super T, ? extends U> keyExtractor, Comparator<? super U> keyComparator) {
+        return new KeyedSorter<T>(Collections.emptyList()).thenComparing(keyExtractor, keyComparator);
+    }
+
+    public static <T> KeyedSorter<T> comparingInt(ToIntFunction<? super T> keyExtractor) {
+        return new KeyedSorter<T>(Collections.emptyList()).thenComparingInt(keyExtractor);
+    }
+
+    public <U extends Comparable<? super U>> KeyedSorter<T> thenComparing(Function<? super T, ? extends U> keyExtractor) {
+        return thenComparing(keyExtractor, Comparator.naturalOrder());
+    }
+
+    public <U> KeyedSorter<T> thenComparing(Function<? super T, ? extends U> keyExtractor, Comparator<? super U> keyComparator) {
+        Objects.requireNonNull(keyExtractor);
+        Objects.requireNonNull(keyComparator);
+        return append(new ObjectColumn<>(keyExtractor, keyComparator, false));
+    }
+
+    public KeyedSorter<T> thenComparingInt(ToIntFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        return append(new IntColumn<>(keyExtractor, false));
+    }
+
+    /**
+     * 和Comparator.reversed一样，把到目前为止的整个顺序倒过来
+     *
+     * @return
+     */
+    public KeyedSorter<T> reversed() {
+        List<Column<T>> reversed = new ArrayList<>(columns.size());
+        for (Column<T> column : columns) {
+            reversed.add(column.reversed());
+        }
+        return new KeyedSorter<>(Collections.unmodifiableList(reversed));
+    }
+
+    /**
+     * 和这个KeyedSorter顺序相同的普通比较器
+     *
+     * @return
+     */
+    public Comparator<T> comparator() {
+        return (t1, t2) -> {
+            for (Column<T> column : columns) {
+                int c = column.compare(t1, t2);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * 和List.sort一样，先复制成数组，排好后再写回list
+     *
+     * @param list
+     */
+    public void sort(List<T> list) {
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) list.toArray();
+        sort(array);
+        ListIterator<T> it = list.listIterator();
+        for (T t : array) {
+            it.next();
+            it.set(t);
+        }
+    }
+
+    public void sort(T[] array) {
+        int n = array.length;
+        if (n < 2) {
+            return;
+        }
+        int[][] ranks = new int[columns.size()][];
+        int[] bits = new int[columns.size()];
+        int indexBits = bitsFor(n - 1);
+        int totalBits = indexBits;
+        for (int c = 0; c < ranks.length; c++) {
+            ranks[c] = columns.get(c).ranks(array);
+            bits[c] = bitsFor(max(ranks[c]));
+            totalBits += bits[c];
+        }
+        int[] order = totalBits < Long.SIZE ? packedOrder(ranks, bits, indexBits, n) : lexicographicOrder(ranks, n);
+        Object[] copy = array.clone();
+        for (int i = 0; i < n; i++) {
+            @SuppressWarnings("unchecked")
+            T t = (T) copy[order[i]];
+            array[i] = t;
+        }
+    }
+
+    private static int[] packedOrder(int[][] ranks, int[] bits, int indexBits, int n) {
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            long key = 0;
+            for (int c = 0; c < ranks.length; c++) {
+                key = (key << bits[c]) | ranks[c][i];
+            }
+            packed[i] = (key << indexBits) | i;
+        }
+        Arrays.parallelSort(packed);
+        long indexMask = (1L << indexBits) - 1;
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) (packed[i] & indexMask);
+        }
+        return order;
+    }
+
+    private static int[] lexicographicOrder(int[][] ranks, int n) {
+        Integer[] indexes = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            indexes[i] = i;
+        }
+        // TimSort是稳定的，名次全部相同的下标保持原来的顺序
+        Arrays.sort(indexes, (i, j) -> {
+            for (int[] rank : ranks) {
+                int c = Integer.compare(rank[i], rank[j]);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        });
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = indexes[i];
+        }
+        return order;
+    }
+
+    private KeyedSorter<T> append(Column<T> column) {
+        List<Column<T>> appended = new ArrayList<>(columns.size() + 1);
+        appended.addAll(columns);
+        appended.add(column);
+        return new KeyedSorter<>(Collections.unmodifiableList(appended));
+    }
+
+    private static int max(int[] values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    // 表示0到value需要的位数，value为0时不需要占位
+    private static int bitsFor(int value) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+    }
+
+    private interface Column<T> {
+        /**
+         * 每个元素的键在这一列所有不同的键中的名次，从0开始，只对每个元素调用一次取键函数
+         */
+        int[] ranks(T[] array);
+
+        int compare(T t1, T t2);
+
+        Column<T> reversed();
+    }
+
+    private static final class ObjectColumn<T, U> implements Column<T> {
+        private final Function<? super T, ? extends U> keyExtractor;
+        private final Comparator<? super U> keyComparator;
+        private final boolean descending;
+
+        ObjectColumn(Function<? super T, ? extends U> keyExtractor, Comparator<? super U> keyComparator, boolean descending) {
+            this.keyExtractor = keyExtractor;
+            this.keyComparator = keyComparator;
+            this.descending = descending;
+        }
+
+        @Override
+        public int[] ranks(T[] array) {
+            int n = array.length;
+            Object[] keys = new Object[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = keyExtractor.apply(array[i]);
+            }
+            // 先用HashMap把相等的键归到同一个槽，只需要对不同的键排序
+            Map<Object, Integer> slots = new HashMap<>();
+            int[] slotOf = new int[n];
+            for (int i = 0; i < n; i++) {
+                Integer slot = slots.get(keys[i]);
+                if (slot == null) {
+                    slot = slots.size();
+                    slots.put(keys[i], slot);
+                }
+                slotOf[i] = slot;
+            }
+            int m = slots.size();
+            Object[] distinct = new Object[m];
+            for (Map.Entry<Object, Integer> entry : slots.entrySet()) {
+                distinct[entry.getValue()] = entry.getKey();
+            }
+            Integer[] sortedSlots = new Integer[m];
+            for (int slot = 0; slot < m; slot++) {
+                sortedSlots[slot] = slot;
+            }
+            @SuppressWarnings("unchecked")
+            Comparator<Object> comparator = (Comparator<Object>) keyComparator;
+            Arrays.sort(sortedSlots, (s1, s2) -> comparator.compare(distinct[s1], distinct[s2]));
+            // equals不同但比较结果相等的键（比如忽略大小写的比较器）名次也要相同
+            int[] rankOf = new int[m];
+            int rank = 0;
+            for (int j = 1; j < m; j++) {
+                if (comparator.compare(distinct[sortedSlots[j - 1]], distinct[sortedSlots[j]]) != 0) {
+                    rank++;
+                }
+                rankOf[sortedSlots[j]] = rank;
+            }
+            int[] ranks = new int[n];
+            for (int i = 0; i < n; i++) {
+                ranks[i] = descending ? rank - rankOf[slotOf[i]] : rankOf[slotOf[i]];
+            }
+            return ranks;
+        }
+
+        @Override
+        public int compare(T t1, T t2) {
+            return descending ? keyComparator.compare(keyExtractor.apply(t2), keyExtractor.apply(t1))
+                    : keyComparator.compare(keyExtractor.apply(t1), keyExtractor.apply(t2));
+        }
+
+        @Override
+        public Column<T> reversed() {
+            return new ObjectColumn<>(keyExtractor, keyComparator, !descending);
+        }
+    }
+
+    private static final class IntColumn<T> implements Column<T> {
+        private final ToIntFunction<? super T> keyExtractor;
+        private final boolean descending;
+
+        IntColumn(ToIntFunction<? super T> keyExtractor, boolean descending) {
+            this.keyExtractor = keyExtractor;
+            this.descending = descending;
+        }
+
+        @Override
+        public int[] ranks(T[] array) {
+            int n = array.length;
+            int[] keys = new int[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = keyExtractor.applyAsInt(array[i]);
+            }
+            // 按键排好的下标依次编号，键变化时名次加一
+            int[] order = RadixSort.order(keys, n >= RadixSort.PARALLEL_THRESHOLD);
+            int[] ranks = new int[n];
+            int rank = 0;
+            for (int i = 1; i < n; i++) {
+                if (keys[order[i]] != keys[order[i - 1]]) {
+                    rank++;
+                }
+                ranks[order[i]] = rank;
+            }
+            if (descending) {
+                for (int i = 0; i < n; i++) {
+                    ranks[i] = rank - ranks[i];
+                }
+            }
+            return ranks;
+        }
+
+        @Override
+        public int compare(T t1, T t2) {
+            return descending ? Integer.compare(keyExtractor.applyAsInt(t2), keyExtractor.applyAsInt(t1))
+                    : Integer.compare(keyExtractor.applyAsInt(t1), keyExtractor.applyAsInt(t2));
+        }
+
+        @Override
+        public Column<T> reversed() {
+            return new IntColumn<>(keyExtractor, !descending);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.chenjj.java8.sort;
+
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * 按int键对对象排序的LSD基数排序
+ * <p>
+ * apples.sort(Comparator.comparing(Apple::getWeight))每次比较都要调用两次getWeight并拆箱，
+ * 一共要比较O(n log n)次。这里换一种做法：
+ * 1、每个元素只调用一次keyExtractor，把键取到一个int[]里；
+ * 2、对键做LSD基数排序：每次按8位分组，从最低的8位到最高的8位一共4趟，每一趟先统计每组的个数，
+ * 再把键和它原来的下标按组依次放到新数组里。每一趟都是稳定的，所以整个排序也是稳定的，
+ * 和List.sort一样，键相同的元素保持原来的顺序；所有键在某一组8位上都相同时跳过那一趟；
+ * 3、得到排好序的下标之后，一次性按下标重新排列对象。
+ * 时间是O(n)，不需要比较。数据量大时每一趟都把数组分成若干块并行统计和分发：
+ * 先并行算出每块每组的个数，然后按“组优先、块其次”的顺序求出每块每组的起始位置，
+ * 各块写的位置互不重叠，所以分发时也不需要同步，而且仍然是稳定的。
+ */
+public final class RadixSort {
+    // 元素个数超过这个值时默认并行排序，并行时每块至少有这么多元素
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int RADIX_BITS = 8;
+    private static final int BUCKETS = 1 << RADIX_BITS;
+
+    private RadixSort() {
+    }
+
+    /**
+     * 按keyExtractor取出的int键从小到大稳定排序list，和List.sort一样先复制成数组，排好后再写回
+     *
+     * @param list
+     * @param keyExtractor
+     * @param <T>
+     */
+    public static <T> void sortByInt(List<T> list, ToIntFunction<? super T> keyExtractor) {
+        @SuppressWarnings("unchecked")
+        T[] array = (T[]) list.toArray();
+        sortByInt(array, keyExtractor);
+        ListIterator<T> it = list.listIterator();
+        for (T t : array) {
+            it.next();
+            it.set(t);
+        }
+    }
+
+    public static <T> void sortByInt(T[] array, ToIntFunction<? super T> keyExtractor) {
+        sortByInt(array, keyExtractor, array.length >= PARALLEL_THRESHOLD);
+    }
+
+    public static <T> void sortByInt(T[] array, ToIntFunction<? super T> keyExtractor, boolean parallel) {
+        int n = array.length;
+        int[] keys = new int[n];
+        range(n, parallel).forEach(i -> keys[i] = keyExtractor.applyAsInt(array[i]));
+        int[] order = order(keys, parallel);
+        Object[] copy = array.clone();
+        range(n, parallel).forEach(i -> {
+            @SuppressWarnings("unchecked")
+            T t = (T) copy[order[i]];
+            array[i] = t;
+        });
+    }
+
+    /**
+     * 按keys从小到大稳定排序后的下标：keys[order[0]] &lt;= keys[order[1]] &lt;= ...，keys本身不变
+     *
+     * @param keys
+     * @param parallel
+     * @return
+     */
+    public static int[] order(int[] keys, boolean parallel) {
+        int n = keys.length;
+        // 翻转符号位，负数就排在正数前面，之后可以按无符号数逐组比较
+        int[] flipped = new int[n];
+        int[] identity = new int[n];
+        range(n, parallel).forEach(i -> {
+            flipped[i] = keys[i] ^ Integer.MIN_VALUE;
+            identity[i] = i;
+        });
+        int[] k = flipped;
+        int[] idx = identity;
+        int chunks = parallel ? Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, n / PARALLEL_THRESHOLD)) : 1;
+        int[] k2 = new int[n];
+        int[] idx2 = new int[n];
+        for (int shift = 0; shift < Integer.SIZE; shift += RADIX_BITS) {
+            if (pass(k, idx, k2, idx2, shift, chunks)) {
+                int[] t = k;
+                k = k2;
+                k2 = t;
+                t = idx;
+                idx = idx2;
+                idx2 = t;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * 按第shift位开始的8位把(src, srcIdx)分发到(dst, dstIdx)，所有键在这8位上都相同时不需要移动，返回false
+     */
+    private static boolean pass(int[] src, int[] srcIdx, int[] dst, int[] dstIdx, int shift, int chunks) {
+        int n = src.length;
+        int[][] counts = new int[chunks][BUCKETS];
+        forEachChunk(chunks, c -> {
+            int[] count = counts[c];
+            for (int i = from(c, chunks, n), to = from(c + 1, chunks, n); i < to; i++) {
+                count[(src[i] >>> shift) & (BUCKETS - 1)]++;
+            }
+        });
+        // 每块每组的起始位置：先按组，同一组内再按块的顺序，保证稳定
+        int position = 0;
+        for (int d = 0; d < BUCKETS; d++) {
+            int total = 0;
+            for (int c = 0; c < chunks; c++) {
+                int count = counts[c][d];
+                counts[c][d] = position + total;
+                total += count;
+            }
+            if (total == n) {
+                return false;
+            }
+            position += total;
+        }
+        forEachChunk(chunks, c -> {
+            int[] next = counts[c];
+            for (int i = from(c, chunks, n), to = from(c + 1, chunks, n); i < to; i++) {
+                int p = next[(src[i] >>> shift) & (BUCKETS - 1)]++;
+                dst[p] = src[i];
+                dstIdx[p] = srcIdx[i];
+            }
+        });
+        return true;
+    }
+
+    private static int from(int chunk, int chunks, int n) {
+        return (int) ((long) chunk * n / chunks);
+    }
+
+    private static void forEachChunk(int chunks, IntConsumer action) {
+        if (chunks == 1) {
+            action.accept(0);
+        } else {
+            IntStream.range(0, chunks).parallel().forEach(action);
+        }
+    }
+
+    private static IntStream range(int n, boolean parallel) {
+        IntStream range = IntStream.range(0, n);
+        return parallel ? range.parallel() : range;
+    }
+}
@@ -0,0 +1,127 @@
+package com.chenjj.java8.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多个线程可以同时追加元素的缓冲区，供ConcurrentToListCollector使用
+ * <p>
+ * 每个线程通过ThreadLocal拿到自己的当前块（Chunk），只往自己的块里写，写满了再分配一个更大的块。
+ * 新块分配出来时用CAS挂到一个全局的无锁链表（Treiber栈）上，这是唯一需要同步的地方，
+ * 每个块只同步一次，而不是每个元素都同步。所有线程都结束之后（并行流的join保证了可见性），
+ * toList遍历链表把各个块拼接起来。
+ * <p>
+ * ThreadLocal的值保存在线程自己的ThreadLocalMap里，公共线程池的工作线程会一直存活，收集结束后
+ * 它们仍然引用着自己的最后一个块，要等以后碰巧有别的ThreadLocal操作才会被清除。所以toList拼接完之后
+ * 会清空每一个块（丢掉元素数组，断开链表），残留的ThreadLocal值只是一个空壳，不再引用任何元素。
+ * 元素的顺序：同一个线程追加的元素保持追加的顺序，不同线程之间的顺序不确定。
+ */
+public final class ChunkedAppendBuffer<T> {
+    static final int MIN_CHUNK_SIZE = 64;
+    static final int MAX_CHUNK_SIZE = 1 << 16;
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private final ThreadLocal<Chunk> local = new ThreadLocal<>();
+    private final AtomicReference<Chunk> head = new AtomicReference<>();
+    private final int firstChunkSize;
+
+    public ChunkedAppendBuffer() {
+        this(MIN_CHUNK_SIZE);
+    }
+
+    public ChunkedAppendBuffer(int firstChunkSize) {
+        this.firstChunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, firstChunkSize));
+    }
+
+    public void add(T element) {
+        Chunk chunk = local.get();
+        if (chunk == null || chunk.size == chunk.items.length) {
+            chunk = newChunk(chunk);
+        }
+        chunk.items[chunk.size++] = element;
+    }
+
+    /**
+     * 把other的所有块移到当前缓冲区，不复制元素。只能在所有追加操作都结束之后调用
+     *
+     * @param other
+     * @return 当前对象
+     */
+    public ChunkedAppendBuffer<T> addAll(ChunkedAppendBuffer<T> other) {
+        // other的块是后进先出的，先反转再逐个压入，保持它们原来的相对顺序
+        Chunk reversed = null;
+        for (Chunk chunk = other.head.getAndSet(null); chunk != null; ) {
+            Chunk next = chunk.next;
+            chunk.next = reversed;
+            reversed = chunk;
+            chunk = next;
+        }
+        for (Chunk chunk = reversed; chunk != null; ) {
+            Chunk next = chunk.next;
+            push(chunk);
+            chunk = next;
+        }
+        return this;
+    }
+
+    /**
+     * 拼接所有块，只能在所有追加操作都结束之后调用。拼接后缓冲区被清空，不再引用任何元素
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> toList() {
+        int total = 0;
+        int chunks = 0;
+        for (Chunk chunk = head.get(); chunk != null; chunk = chunk.next) {
+            total += chunk.size;
+            chunks++;
+        }
+        // 链表是后进先出的，倒过来遍历，单线程追加时结果就和追加的顺序一样
+        Chunk[] ordered = new Chunk[chunks];
+        int i = chunks;
+        for (Chunk chunk = head.getAndSet(null); chunk != null; chunk = chunk.next) {
+            ordered[--i] = chunk;
+        }
+        List<T> result = new ArrayList<>(total);
+        for (Chunk chunk : ordered) {
+            for (int k = 0; k < chunk.size; k++) {
+                result.add((T) chunk.items[k]);
+            }
+            // 工作线程的ThreadLocal可能还指向这个块，清空它，不让线程继续引用这些元素
+            chunk.items = EMPTY;
+            chunk.size = 0;
+            chunk.next = null;
+        }
+        return result;
+    }
+
+    private Chunk newChunk(Chunk previous) {
+        int capacity = previous == null ? firstChunkSize
+                : Math.max(firstChunkSize, Math.min(MAX_CHUNK_SIZE, previous.items.length * 2));
+        Chunk chunk = new Chunk(capacity);
+        push(chunk);
+        local.set(chunk);
+        return chunk;
+    }
+
+    private void push(Chunk chunk) {
+        Chunk current;
+        do {
+            current = head.get();
+            chunk.next = current;
+        } while (!head.compareAndSet(current, chunk));
+    }
+
+    private static final class Chunk {
+        Object[] items;
+        int size;
+        Chunk next;
+
+        Chunk(int capacity) {
+            this.items = new Object[capacity];
+        }
+    }
+}
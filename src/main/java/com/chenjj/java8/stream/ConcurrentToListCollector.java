@@ -0,0 +1,97 @@
+package com.chenjj.java8.stream;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collector.Characteristics.CONCURRENT;
+import static java.util.stream.Collector.Characteristics.UNORDERED;
+
+/**
+ * 真正可以声明为CONCURRENT的toList收集器
+ * <p>
+ * ToListCollector的累加器是ArrayList，多个线程同时add会破坏它的内部状态，所以不能是CONCURRENT的，
+ * 并行时只能让每个拆分收集到自己的ArrayList，再由combiner一次次地addAll复制。
+ * 这个收集器的累加器是ChunkedAppendBuffer：每个线程写自己的块，不需要加锁，
+ * 所以并行流只创建一个累加器，所有线程直接往里追加，最后在finisher中一次性拼接成ArrayList。
+ * 它同时是UNORDERED的：有序的并行流也会走并发收集的路径，不同线程收集的元素之间没有确定的顺序。
+ * 需要保持顺序时请使用ToListCollector。
+ * <p>
+ * 知道大致的元素个数时（例如toList(stream)从Spliterator.estimateSize得到），每个线程的第一个块
+ * 就按“元素个数 / 并行度”分配，避免从小块开始一次次地分配新块。
+ *
+ * @param <T>
+ */
+public class ConcurrentToListCollector<T> implements Collector<T, ChunkedAppendBuffer<T>, List<T>> {
+    private final int firstChunkSize;
+
+    public ConcurrentToListCollector() {
+        this.firstChunkSize = ChunkedAppendBuffer.MIN_CHUNK_SIZE;
+    }
+
+    /**
+     * 预计要收集expectedSize个元素
+     *
+     * @param expectedSize
+     */
+    public ConcurrentToListCollector(long expectedSize) {
+        long perThread = expectedSize / ForkJoinPool.getCommonPoolParallelism();
+        this.firstChunkSize = (int) Math.min(ChunkedAppendBuffer.MAX_CHUNK_SIZE, Math.max(0, perThread));
+    }
+
+    /**
+     * 先从流的Spliterator得到预计的元素个数，再用预先确定块大小的收集器收集
+     *
+     * @param stream
+     * @param <T>
+     * @return
+     */
+    public static <T> List<T> toList(Stream<T> stream) {
+        Spliterator<T> spliterator = stream.spliterator();
+        long estimate = spliterator.estimateSize();
+        ConcurrentToListCollector<T> collector = estimate == Long.MAX_VALUE
+                ? new ConcurrentToListCollector<>() : new ConcurrentToListCollector<>(estimate);
+        return StreamSupport.stream(spliterator, stream.isParallel()).collect(collector);
+    }
+
+    @Override
+    public Supplier<ChunkedAppendBuffer<T>> supplier() {
+        return () -> new ChunkedAppendBuffer<>(firstChunkSize);
+    }
+
+    @Override
+    public BiConsumer<ChunkedAppendBuffer<T>, T> accumulator() {
+        return ChunkedAppendBuffer::add;
+    }
+
+    /**
+     * 顺序流不会调用combiner；CONCURRENT的收集器在并行流中只有一个累加器，也不会调用。
+     * 这里只是移动块，不复制元素
+     *
+     * @return
+     */
+    @Override
+    public BinaryOperator<ChunkedAppendBuffer<T>> combiner() {
+        return ChunkedAppendBuffer::addAll;
+    }
+
+    @Override
+    public Function<ChunkedAppendBuffer<T>, List<T>> finisher() {
+        return ChunkedAppendBuffer::toList;
+    }
+
+    @Override
+    public Set<Characteristics> characteristics() {
+        return Collections.unmodifiableSet(EnumSet.of(CONCURRENT, UNORDERED));
+    }
+}
@@ -47,6 +47,13 @@ public class CreateStream {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        // distinct()要把所有不同的词都放在内存里，文件很大时可以用HyperLogLog估计，内存固定为2^14个字节
+        try (Stream<String> lines = Files.lines(Paths.get("data.txt"), Charset.defaultCharset())) {
+            uniqueWords = lines.collect(DistinctCollectors.approximateDistinctWords(HyperLogLog.DEFAULT_PRECISION));
+            System.out.println(uniqueWords);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
 
         /**
          * 由函数生成流：创建无限流
@@ -0,0 +1,98 @@
+package com.chenjj.java8.stream;
+
+import com.chenjj.java8.stream.parallel.WordFrequencyMap;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+import static java.util.stream.Collector.Characteristics.UNORDERED;
+
+/**
+ * 统计不同元素个数的收集器，用来代替distinct().count()
+ * <p>
+ * approximate*：基于HyperLogLog，内存固定为2^precision个字节，结果是估计值；
+ * exact*：精确计数，仍然要保存所有不同的元素，但每个拆分有自己的集合，合并时把小的并入大的。
+ * *Words版本接收的是一行行文本，在收集器内部按空白字符切分单词，不再需要
+ * flatMap(line -> Arrays.stream(line.split(" ")))。
+ * 结果和元素的顺序无关，所以这些收集器都是UNORDERED的。
+ */
+public final class DistinctCollectors {
+
+    private DistinctCollectors() {
+    }
+
+    /**
+     * 近似统计不同字符串的个数，使用默认精度
+     *
+     * @return
+     */
+    public static Collector<CharSequence, HyperLogLog, Long> approximateDistinct() {
+        return approximateDistinct(HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    public static Collector<CharSequence, HyperLogLog, Long> approximateDistinct(int precision) {
+        return Collector.of(() -> new HyperLogLog(precision), HyperLogLog::add, HyperLogLog::merge,
+                HyperLogLog::estimate, UNORDERED);
+    }
+
+    /**
+     * 近似统计任意对象的不同个数，hasher必须为相等的对象返回相同的、分布均匀的64位哈希值，
+     * 例如o -> HyperLogLog.mix64(o.hashCode())（元素个数很大时32位的hashCode冲突会使结果偏小）
+     *
+     * @param hasher
+     * @param precision
+     * @param <T>
+     * @return
+     */
+    public static <T> Collector<T, HyperLogLog, Long> approximateDistinct(ToLongFunction<? super T> hasher, int precision) {
+        return Collector.of(() -> new HyperLogLog(precision),
+                (hll, t) -> hll.addHash(hasher.applyAsLong(t)), HyperLogLog::merge,
+                HyperLogLog::estimate, UNORDERED);
+    }
+
+    /**
+     * 近似统计文本行中不同单词的个数
+     *
+     * @param precision
+     * @return
+     */
+    public static Collector<CharSequence, HyperLogLog, Long> approximateDistinctWords(int precision) {
+        return Collector.of(() -> new HyperLogLog(precision), HyperLogLog::addWords, HyperLogLog::merge,
+                HyperLogLog::estimate, UNORDERED);
+    }
+
+    /**
+     * 精确统计不同元素的个数
+     *
+     * @param <T>
+     * @return
+     */
+    public static <T> Collector<T, Set<T>, Long> exactDistinct() {
+        return Collector.of(HashSet::new, Set::add, (left, right) -> {
+            if (left.size() < right.size()) {
+                right.addAll(left);
+                return right;
+            }
+            left.addAll(right);
+            return left;
+        }, set -> (long) set.size(), UNORDERED);
+    }
+
+    /**
+     * 精确统计文本行中不同单词的个数，重复出现的单词不会创建新的字符串
+     *
+     * @return
+     */
+    public static Collector<CharSequence, WordFrequencyMap, Long> exactDistinctWords() {
+        return Collector.of(WordFrequencyMap::new, WordFrequencyMap::addWords, (left, right) -> {
+            if (left.size() < right.size()) {
+                right.merge(left);
+                return right;
+            }
+            left.merge(right);
+            return left;
+        }, map -> (long) map.size(), UNORDERED);
+    }
+}
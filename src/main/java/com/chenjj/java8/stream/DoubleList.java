@@ -0,0 +1,115 @@
+package com.chenjj.java8.stream;
+
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+
+/**
+ * 可以自动增长的double列表，元素直接保存在double[]里
+ * <p>
+ * List&lt;Double&gt;中的每个元素都是一个Double对象（对象头加上double值约16到24字节），再加上数组里的一个引用，
+ * 而这里每个元素只占8个字节，元素很多时内存大约只有前者的1/3，遍历时也不需要拆箱。
+ */
+public class DoubleList {
+    private double[] elements;
+    private int size;
+
+    public DoubleList() {
+        this(10);
+    }
+
+    public DoubleList(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must not be negative: " + initialCapacity);
+        }
+        this.elements = new double[initialCapacity];
+    }
+
+    public void add(double value) {
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+        elements[size++] = value;
+    }
+
+    public void addAll(DoubleList other) {
+        int newSize = size + other.size;
+        if (newSize > elements.length) {
+            grow(newSize);
+        }
+        System.arraycopy(other.elements, 0, elements, size, other.size);
+        size = newSize;
+    }
+
+    public double get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 元素的副本
+     *
+     * @return
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * 直接在内部数组上创建的DoubleStream，不复制元素
+     *
+     * @return
+     */
+    public DoubleStream stream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    // 按1.5倍增长，和ArrayList一样
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, elements.length + (elements.length >> 1));
+        elements = Arrays.copyOf(elements, newCapacity);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DoubleList)) {
+            return false;
+        }
+        DoubleList other = (DoubleList) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (Double.doubleToLongBits(elements[i]) != Double.doubleToLongBits(other.elements[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + Double.hashCode(elements[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
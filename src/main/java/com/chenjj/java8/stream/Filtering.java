@@ -72,6 +72,11 @@ public class Filtering {
                 .sorted(Comparator.comparing(Dish::getCalories)) // 中间操作
                 .map(Dish::getName) // 中间操作
                 .collect(Collectors.toList()); //将Stream转换为List
+        // 只需要热量最低的3道菜时不必对全部菜排序，用大小为3的堆即可，comparingInt的键只取一次
+        List<Dish> lowestCaloricDishes = menu.stream()
+                .filter(dish -> dish.getCalories() < 400)
+                .collect(TopK.smallestByInt(3, Dish::getCalories));
+        System.out.println(lowestCaloricDishes);
         /**
          * 你可以看到两类操作：
          * filter、 sorted和map可以连成一条流水线；
@@ -0,0 +1,171 @@
+package com.chenjj.java8.stream;
+
+/**
+ * HyperLogLog基数估计
+ * <p>
+ * distinct().count()要把所有不同的元素都放进一个HashSet，不同元素越多占用的内存越大。
+ * HyperLogLog只保存m = 2^precision个寄存器（每个一个字节），内存大小固定，与元素个数无关：
+ * 1、对每个元素计算64位哈希值，高precision位选择一个寄存器；
+ * 2、剩下的位中第一个1出现的位置（前导0的个数加1）记为rank，寄存器保存见过的最大rank；
+ * 3、一个寄存器的最大rank为r，大约说明落到这个寄存器上的不同元素有2^r个，
+ * 对所有寄存器取调和平均数再乘以修正系数就得到估计值。
+ * 标准误差约为1.04 / sqrt(m)，precision为14时使用16KB内存，误差约0.8%。
+ * <p>
+ * 两个precision相同的HyperLogLog对每个寄存器取最大值就能合并，结果和把所有元素加进同一个
+ * HyperLogLog完全一样，所以非常适合并行流：每个拆分有自己的HyperLogLog，combiner中合并。
+ */
+public class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+    public static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and "
+                    + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * 加入一个已经计算好的64位哈希值，哈希值的各个位必须分布均匀
+     *
+     * @param hash
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // 低位补一个1，保证rank最大为64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void add(CharSequence value) {
+        addHash(hash(value, 0, value.length()));
+    }
+
+    /**
+     * 把text中以空白字符分隔的每个单词加进来，直接对字符区间计算哈希值，不创建子字符串
+     *
+     * @param text
+     */
+    public void addWords(CharSequence text) {
+        int wordStart = -1;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                if (wordStart >= 0) {
+                    addHash(hash(text, wordStart, i));
+                    wordStart = -1;
+                }
+            } else if (wordStart < 0) {
+                wordStart = i;
+            }
+        }
+        if (wordStart >= 0) {
+            addHash(hash(text, wordStart, length));
+        }
+    }
+
+    /**
+     * 把other合并进来，两者的precision必须相同
+     *
+     * @param other
+     * @return 当前对象
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge precision " + other.precision + " into " + precision);
+        }
+        byte[] otherRegisters = other.registers;
+        for (int i = 0; i < registers.length; i++) {
+            if (otherRegisters[i] > registers[i]) {
+                registers[i] = otherRegisters[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 估计加入过的不同元素的个数
+     *
+     * @return
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        // 元素较少时很多寄存器还是0，调和平均数偏差较大，改用线性计数
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        // 哈希值是64位的，在long能表示的范围内不需要大基数修正
+        return Math.round(estimate);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    /**
+     * 字符区间的64位哈希值：先按FNV-1a逐个字符混合，再用MurmurHash3的fmix64打散各个位。
+     * String.hashCode只有32位，元素上亿时冲突太多，不适合用来做基数估计
+     *
+     * @param text
+     * @param from
+     * @param to
+     * @return
+     */
+    public static long hash(CharSequence text, int from, int to) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix64(h);
+    }
+
+    /**
+     * MurmurHash3的fmix64，可以用来把对象自己的哈希值扩展成分布均匀的64位值
+     *
+     * @param h
+     * @return
+     */
+    public static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e1a63L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -9,8 +9,39 @@ import java.util.stream.Collector;
  * 其中T、 A和R分别是流中元素的类型、用于累积部分结果的对象类型，以及collect操作最
  * 终 结 果 的 类 型 。 这 里 应 该 收 集Integer 流 ， 而 累 加 器 和 结 果 类 型 则 都 是 Map<Boolean,
  * List<Integer>>，键是true和false，值则分别是质数和非质数的List
+ * <p>
+ * 无参构造的收集器用已经找到的质数判断下一个候选数，只能顺序使用：并行时每个拆分只能看到
+ * 自己找到的质数，判断结果是错的。new PrimeNumbersCollector(max)是可以并行的版本：
+ * 构造时一次性求出sqrt(max)以内的基础质数，所有拆分共享这个只读的int[]，
+ * 每个候选数只用基础质数判断，和其他元素无关，所以各拆分的结果按顺序拼接起来就是正确的。
  */
 public class PrimeNumbersCollector implements Collector<Integer, Map<Boolean, List<Integer>>, Map<Boolean, List<Integer>>> {
+    // 并行模式下允许的最大候选数和sqrt(max)以内的所有质数，顺序模式下为null
+    private final int max;
+    private final int[] basePrimes;
+
+    public PrimeNumbersCollector() {
+        this.max = Integer.MAX_VALUE;
+        this.basePrimes = null;
+    }
+
+    /**
+     * 可以并行使用的收集器，流中的候选数不能超过max
+     *
+     * @param max
+     */
+    public PrimeNumbersCollector(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max must not be negative: " + max);
+        }
+        int[] oddPrimes = PrimeSieve.oddPrimesUpTo((int) Math.sqrt(max));
+        int[] primes = new int[oddPrimes.length + 1];
+        primes[0] = 2;
+        System.arraycopy(oddPrimes, 0, primes, 1, oddPrimes.length);
+        this.max = max;
+        this.basePrimes = primes;
+    }
+
     @Override
     public Supplier<Map<Boolean, List<Integer>>> supplier() {
         // https://blog.csdn.net/luman1991/article/details/53034602
@@ -32,6 +63,11 @@ public class PrimeNumbersCollector implements Collector<Integer, Map<Boolean, Li
 
     @Override
     public BiConsumer<Map<Boolean, List<Integer>>, Integer> accumulator() {
+        if (basePrimes != null) {
+            return (Map<Boolean, List<Integer>> acc, Integer candidate) -> {
+                acc.get(isPrime(basePrimes, max, candidate)).add(candidate);
+            };
+        }
         return (Map<Boolean, List<Integer>> acc, Integer candidate) -> {
             acc.get(isPrime(acc.get(true), candidate)).add(candidate);
         };
@@ -39,14 +75,20 @@ public class PrimeNumbersCollector implements Collector<Integer, Map<Boolean, Li
 
     /**
      * 让收集器并行工作（如果可能）
-     * 请注意，实际上这个收集器是不能并行使用的，因为该算法本身是顺序的。这意味着永远都
-     * 不会调用combiner方法，你可以把它的实现留空（更好的做法是抛出一个UnsupportedOperationException异常）。
-     * 为了让这个例子完整，我们还是决定实现它。
+     * 请注意，无参构造的收集器是不能并行使用的，因为该算法本身是顺序的：右边的拆分看不到左边
+     * 找到的质数，会把合数误判为质数，简单地拼接两个分区得到的是错误的结果。所以这种情况下
+     * 抛出UnsupportedOperationException，而不是悄悄地返回错误的结果。
+     * 并行模式下每个候选数的判断与其他元素无关，左右两部分按顺序拼接即可。
      *
      * @return
      */
     @Override
     public BinaryOperator<Map<Boolean, List<Integer>>> combiner() {
+        if (basePrimes == null) {
+            return (booleanListMap1, booleanListMap2) -> {
+                throw new UnsupportedOperationException("use new PrimeNumbersCollector(max) for parallel streams");
+            };
+        }
         return ((booleanListMap1, booleanListMap2) -> {
             booleanListMap1.get(true).addAll(booleanListMap2.get(true));
             booleanListMap1.get(false).addAll(booleanListMap2.get(false));
@@ -70,12 +112,42 @@ public class PrimeNumbersCollector implements Collector<Integer, Map<Boolean, Li
     }
 
     public static boolean isPrime(List<Integer> primes, int candidate) {
+        // 0、1和负数都不是质数，和并行版本的判断一致；否则1会被当作质数加入primes，之后的数都会被判为合数
+        if (candidate < 2) {
+            return false;
+        }
         int candidateRoot = (int) Math.sqrt(candidate);
         return takeWhile(primes, i -> i <= candidateRoot)
                 .stream()
                 .noneMatch(p -> candidate % p == 0);
     }
 
+    /**
+     * 只用sqrt(max)以内的基础质数判断candidate是否是质数
+     *
+     * @param basePrimes 从2开始的、不大于sqrt(max)的所有质数
+     * @param max
+     * @param candidate
+     * @return
+     */
+    static boolean isPrime(int[] basePrimes, int max, int candidate) {
+        if (candidate > max) {
+            throw new IllegalArgumentException(candidate + " is greater than max " + max);
+        }
+        if (candidate < 2) {
+            return false;
+        }
+        for (int p : basePrimes) {
+            if ((long) p * p > candidate) {
+                break;
+            }
+            if (candidate % p == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static <A> List<A> takeWhile(List<A> list, Predicate<A> p) {
         int i = 0;
         for (A item : list) {
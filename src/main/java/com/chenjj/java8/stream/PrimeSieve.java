@@ -0,0 +1,299 @@
+package com.chenjj.java8.stream;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 分段的埃拉托斯特尼筛法
+ * <p>
+ * PrimeNumbersCollector对每个候选数都用已经找到的质数做试除，质数保存在装箱的List&lt;Integer&gt;里，
+ * 每次判断还要创建一个流；n达到10^9时光是结果就需要几千万个Integer对象。这里换一种做法：
+ * 1、只记录奇数，第i位表示2i+1是否是质数，全部结果保存在一个long[]位图里，n = 10^9时约60MB；
+ * 2、先用普通的筛法求出sqrt(n)以内的基础质数，然后把位图分成若干段，每段2^18位（32KB，
+ * 正好放进L1/L2缓存），每一段只用基础质数划掉它范围内的合数；
+ * 3、段的边界都是64的倍数，不同的段写的是不同的long，所以各段可以并行筛选，不需要任何同步。
+ * 结果本身就是“质数/非质数”的分区：isPrime判断，primes和composites分别得到两个分区。
+ */
+public final class PrimeSieve {
+    // 每一段的位数
+    static final int SEGMENT_BITS = 1 << 18;
+
+    private final int n;
+    private final long[] bits;
+
+    private PrimeSieve(int n, long[] bits) {
+        this.n = n;
+        this.bits = bits;
+    }
+
+    public static void main(String[] args) {
+        PrimeSieve sieve = sieve(100);
+        System.out.println(sieve.primes().boxed().collect(Collectors.toList()));
+        System.out.println(sieve(1_000_000_000).count()); // 50847534
+    }
+
+    /**
+     * 并行筛出n以内（包含n）的所有质数
+     *
+     * @param n
+     * @return
+     */
+    public static PrimeSieve sieve(int n) {
+        return sieve(n, true);
+    }
+
+    public static PrimeSieve sieve(int n, boolean parallel) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        // 奇数1, 3, 5, ..., n对应的位数
+        int bitCount = (int) (((long) n + 1) / 2);
+        long[] bits = new long[(bitCount + 63) >>> 6];
+        int[] basePrimes = oddPrimesUpTo((int) Math.sqrt(n));
+        int segments = (bitCount + SEGMENT_BITS - 1) / SEGMENT_BITS;
+        IntStream indexes = IntStream.range(0, segments);
+        if (parallel) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(segment -> {
+            int from = segment * SEGMENT_BITS;
+            sieveSegment(bits, basePrimes, from, Math.min(from + SEGMENT_BITS, bitCount));
+        });
+        if (bitCount > 0) {
+            // 1不是质数
+            bits[0] &= ~1L;
+        }
+        return new PrimeSieve(n, bits);
+    }
+
+    /**
+     * 筛选位区间[from, to)，对应奇数2 * from + 1到2 * to - 1
+     */
+    private static void sieveSegment(long[] bits, int[] basePrimes, int from, int to) {
+        // 先把整段都标记为质数，最后一个long中超出to的位保持为0
+        int lastWord = (to - 1) >>> 6;
+        for (int w = from >>> 6; w < lastWord; w++) {
+            bits[w] = -1L;
+        }
+        bits[lastWord] = -1L >>> (64 - (to - (lastWord << 6)));
+        long low = 2L * from + 1;
+        long high = 2L * to - 1;
+        for (int p : basePrimes) {
+            long square = (long) p * p;
+            if (square > high) {
+                break;
+            }
+            // 段内p的第一个奇数倍，并且从p * p开始，更小的倍数已经被更小的质数划掉了
+            long start = Math.max(square, (low + p - 1) / p * p);
+            if ((start & 1) == 0) {
+                start += p;
+            }
+            for (long i = (start - 1) >>> 1; i < to; i += p) {
+                bits[(int) (i >>> 6)] &= ~(1L << i);
+            }
+        }
+    }
+
+    /**
+     * limit以内的所有奇质数，用普通的筛法计算，只用来求基础质数
+     *
+     * @param limit
+     * @return
+     */
+    static int[] oddPrimesUpTo(int limit) {
+        if (limit < 3) {
+            return new int[0];
+        }
+        boolean[] composite = new boolean[limit + 1];
+        int count = 0;
+        for (int i = 3; i <= limit; i += 2) {
+            if (!composite[i]) {
+                count++;
+                for (long j = (long) i * i; j <= limit; j += 2 * i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        int[] primes = new int[count];
+        int k = 0;
+        for (int i = 3; i <= limit; i += 2) {
+            if (!composite[i]) {
+                primes[k++] = i;
+            }
+        }
+        return primes;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public boolean isPrime(int candidate) {
+        if (candidate > n) {
+            throw new IllegalArgumentException(candidate + " is outside the sieved range [0, " + n + "]");
+        }
+        if (candidate < 2) {
+            return false;
+        }
+        if ((candidate & 1) == 0) {
+            return candidate == 2;
+        }
+        int i = candidate >>> 1;
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * n以内质数的个数
+     *
+     * @return
+     */
+    public int count() {
+        int count = n >= 2 ? 1 : 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * 从小到大遍历所有质数，不装箱
+     *
+     * @param action
+     */
+    public void forEachPrime(IntConsumer action) {
+        primesSpliterator().forEachRemaining(action);
+    }
+
+    /**
+     * 所有质数组成的数组，大小正好等于质数的个数
+     *
+     * @return
+     */
+    public int[] toArray() {
+        int[] primes = new int[count()];
+        int[] k = {0};
+        forEachPrime(p -> primes[k[0]++] = p);
+        return primes;
+    }
+
+    /**
+     * 质数分区，按位图中的long拆分，可以并行处理
+     *
+     * @return
+     */
+    public IntStream primes() {
+        return StreamSupport.intStream(primesSpliterator(), false);
+    }
+
+    /**
+     * 非质数分区：2到n之间的合数
+     *
+     * @return
+     */
+    public IntStream composites() {
+        return IntStream.rangeClosed(2, n).filter(k -> !isPrime(k));
+    }
+
+    private Spliterator.OfInt primesSpliterator() {
+        return new PrimeSpliterator(bits, 0, bits.length, n >= 2);
+    }
+
+    /**
+     * 遍历位图中[word, fence)这些long里的质数，includeTwo表示是否先输出唯一的偶质数2
+     */
+    private static final class PrimeSpliterator implements Spliterator.OfInt {
+        private final long[] bits;
+        private int word;
+        private final int fence;
+        private boolean includeTwo;
+        private long current;
+
+        PrimeSpliterator(long[] bits, int word, int fence, boolean includeTwo) {
+            this.bits = bits;
+            this.word = word;
+            this.fence = fence;
+            this.includeTwo = includeTwo;
+            this.current = word < fence ? bits[word] : 0;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (includeTwo) {
+                includeTwo = false;
+                action.accept(2);
+                return true;
+            }
+            while (current == 0) {
+                if (++word >= fence) {
+                    return false;
+                }
+                current = bits[word];
+            }
+            int i = (word << 6) + Long.numberOfTrailingZeros(current);
+            current &= current - 1;
+            action.accept(2 * i + 1);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            if (includeTwo) {
+                includeTwo = false;
+                action.accept(2);
+            }
+            if (word >= fence) {
+                return;
+            }
+            long w = current;
+            for (int wi = word; ; ) {
+                while (w != 0) {
+                    int i = (wi << 6) + Long.numberOfTrailingZeros(w);
+                    w &= w - 1;
+                    action.accept(2 * i + 1);
+                }
+                if (++wi >= fence) {
+                    break;
+                }
+                w = bits[wi];
+            }
+            word = fence;
+            current = 0;
+        }
+
+        @Override
+        public OfInt trySplit() {
+            int remaining = fence - word;
+            if (remaining < 1024) {
+                return null;
+            }
+            // 前一半包括当前正在遍历的long和可能的2
+            int mid = word + remaining / 2;
+            PrimeSpliterator prefix = new PrimeSpliterator(bits, word, mid, includeTwo);
+            prefix.current = current;
+            includeTwo = false;
+            word = mid;
+            current = bits[mid];
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            // 平均每个long中质数的个数随着数值的增大而减少，这里只给出上界
+            return (long) (fence - word) * 64 + (includeTwo ? 1 : 0);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.chenjj.java8.stream;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.DoubleFunction;
+import java.util.function.DoublePredicate;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * IntStream、LongStream和DoubleStream上的toList、partitioningBy和groupingBy
+ * <p>
+ * 原始类型流没有collect(Collector)，只能先boxed()再用Collectors，结果是Map&lt;Boolean, List&lt;Integer&gt;&gt;，
+ * 每个元素都装箱。这里直接使用原始类型流的三参数collect(supplier, accumulator, combiner)，
+ * 元素保存在IntList、LongList、DoubleList中。并行流中每个拆分有自己的列表，combiner把右边的
+ * 列表按顺序追加到左边，所以有序流的结果和顺序执行一样。
+ */
+public final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() {
+    }
+
+    public static IntList toList(IntStream stream) {
+        return stream.collect(IntList::new, IntList::add, IntList::addAll);
+    }
+
+    public static LongList toList(LongStream stream) {
+        return stream.collect(LongList::new, LongList::add, LongList::addAll);
+    }
+
+    public static DoubleList toList(DoubleStream stream) {
+        return stream.collect(DoubleList::new, DoubleList::add, DoubleList::addAll);
+    }
+
+    /**
+     * 按predicate把元素分成true和false两个分区，两个分区总是存在，即使是空的
+     *
+     * @param stream
+     * @param predicate
+     * @return
+     */
+    public static Map<Boolean, IntList> partitioningBy(IntStream stream, IntPredicate predicate) {
+        return stream.collect(() -> newPartition(new IntList(), new IntList()),
+                (partition, value) -> partition.get(predicate.test(value)).add(value),
+                (left, right) -> {
+                    left.get(true).addAll(right.get(true));
+                    left.get(false).addAll(right.get(false));
+                });
+    }
+
+    public static Map<Boolean, LongList> partitioningBy(LongStream stream, LongPredicate predicate) {
+        return stream.collect(() -> newPartition(new LongList(), new LongList()),
+                (partition, value) -> partition.get(predicate.test(value)).add(value),
+                (left, right) -> {
+                    left.get(true).addAll(right.get(true));
+                    left.get(false).addAll(right.get(false));
+                });
+    }
+
+    public static Map<Boolean, DoubleList> partitioningBy(DoubleStream stream, DoublePredicate predicate) {
+        return stream.collect(() -> newPartition(new DoubleList(), new DoubleList()),
+                (partition, value) -> partition.get(predicate.test(value)).add(value),
+                (left, right) -> {
+                    left.get(true).addAll(right.get(true));
+                    left.get(false).addAll(right.get(false));
+                });
+    }
+
+    /**
+     * 按classifier的结果分组，每组的元素保存在一个IntList中
+     *
+     * @param stream
+     * @param classifier
+     * @param <K>
+     * @return
+     */
+    public static <K> Map<K, IntList> groupingBy(IntStream stream, IntFunction<? extends K> classifier) {
+        return stream.collect(HashMap::new,
+                (groups, value) -> groups.computeIfAbsent(classifier.apply(value), k -> new IntList()).add(value),
+                (left, right) -> right.forEach((k, list) -> left.merge(k, list, (l, r) -> {
+                    l.addAll(r);
+                    return l;
+                })));
+    }
+
+    public static <K> Map<K, LongList> groupingBy(LongStream stream, LongFunction<? extends K> classifier) {
+        return stream.collect(HashMap::new,
+                (groups, value) -> groups.computeIfAbsent(classifier.apply(value), k -> new LongList()).add(value),
+                (left, right) -> right.forEach((k, list) -> left.merge(k, list, (l, r) -> {
+                    l.addAll(r);
+                    return l;
+                })));
+    }
+
+    public static <K> Map<K, DoubleList> groupingBy(DoubleStream stream, DoubleFunction<? extends K> classifier) {
+        return stream.collect(HashMap::new,
+                (groups, value) -> groups.computeIfAbsent(classifier.apply(value), k -> new DoubleList()).add(value),
+                (left, right) -> right.forEach((k, list) -> left.merge(k, list, (l, r) -> {
+                    l.addAll(r);
+                    return l;
+                })));
+    }
+
+    private static <L> Map<Boolean, L> newPartition(L trueList, L falseList) {
+        Map<Boolean, L> partition = new HashMap<>(4);
+        partition.put(true, trueList);
+        partition.put(false, falseList);
+        return partition;
+    }
+}
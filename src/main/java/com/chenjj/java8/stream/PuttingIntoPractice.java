@@ -33,6 +33,12 @@ public class PuttingIntoPractice {
 
         System.out.println(tr2011);
 
+        // 只需要2011年交易额最小的前几笔时，用部分排序代替sorted，时间O(n log k)，空间O(k)
+        List<Transaction> smallest2011 = TopK.partialSortByInt(transactions.stream()
+                .filter(transaction -> transaction.getYear() == 2011), 1, Transaction::getValue)
+                .collect(Collectors.toList());
+        System.out.println(smallest2011);
+
         // 交易员都在哪些不同的城市工作过
         List<String> cities = transactions.stream().map(t -> t.getTrader()
                 .getCity())
@@ -106,5 +112,20 @@ public class PuttingIntoPractice {
                         .min(Comparator.comparing(Transaction::getValue));*/
 
         System.out.println(smallestTransaction.get().getValue());
+
+        // 数据量大时，用带索引的仓库代替每次都扫描整个列表
+        TransactionRepository repository = new TransactionRepository(transactions);
+        System.out.println(repository.findByYear(2011));
+        System.out.println(repository.findTradersByCity("Cambridge"));
+        System.out.println(repository.anyTraderInCity("Milan"));
+        // 交易员搬家后城市索引会自动更新
+        mario.setCity("Cambridge");
+        System.out.println(repository.anyTraderInCity("Milan"));
+        TransactionRepository.Query query = repository.query().year(2012).city("Cambridge");
+        System.out.println(query.plan() + " " + query.list());
+        // 起始年份大于结束年份时没有任何交易，和全表扫描的结果一样是空的，不会抛出异常
+        System.out.println(repository.findByYearBetween(2012, 2011));
+        TransactionRepository.Query inverted = repository.query().yearBetween(2012, 2011);
+        System.out.println(inverted.plan() + " " + inverted.list());
     }
 }
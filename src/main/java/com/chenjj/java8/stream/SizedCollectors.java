@@ -0,0 +1,101 @@
+package com.chenjj.java8.stream;
+
+import com.chenjj.java8.stream.parallel.SplitPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 利用流的大小信息收集到List
+ * <p>
+ * collect(ArrayList::new, List::add, List::addAll)和ToListCollector都从一个默认容量的ArrayList开始，
+ * 元素多时要反复扩容复制，并行时combiner的addAll还要再复制一次。而很多流的数据源是知道大小的：
+ * 1、Spliterator是SIZED且SUBSIZED的（例如数组、ArrayList、IntStream.range，以及只有map等不改变
+ * 元素个数的中间操作的流）：一次性分配正好大小的数组。并行时每次拆分都能准确知道前一半有多少个元素，
+ * 所以每个子任务都直接写入数组中属于自己的那一段，和Stream.toArray的做法一样，不需要任何合并和复制；
+ * 2、只是SIZED（例如HashSet）：总数是准确的，按总数分配ArrayList的容量，顺序收集；
+ * 3、大小未知（例如经过了filter）：回退到普通的collect。
+ */
+public final class SizedCollectors {
+
+    private SizedCollectors() {
+    }
+
+    /**
+     * 把流收集到List中。能够预先确定大小时返回的是固定大小的List（和Arrays.asList一样，
+     * 可以set但不能add或remove），需要可变的List时再复制到ArrayList中
+     *
+     * @param stream
+     * @param <T>
+     * @return
+     */
+    public static <T> List<T> toList(Stream<T> stream) {
+        Spliterator<T> spliterator = stream.spliterator();
+        long size = spliterator.getExactSizeIfKnown();
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            return StreamSupport.stream(spliterator, stream.isParallel()).collect(new ToListCollector<>());
+        }
+        if (!spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
+            List<T> list = new ArrayList<>((int) size);
+            spliterator.forEachRemaining(list::add);
+            return list;
+        }
+        Object[] array = new Object[(int) size];
+        if (stream.isParallel()) {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            pool.invoke(new FillTask<>(spliterator, array, 0, SplitPolicy.defaultPolicy(size, pool.getParallelism())));
+        } else {
+            new FillTask<>(spliterator, array, 0, s -> false).compute();
+        }
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(array);
+        return list;
+    }
+
+    /**
+     * 把spliterator中的元素写入array中从offset开始的一段
+     */
+    private static final class FillTask<T> extends RecursiveAction {
+        private final Spliterator<T> spliterator;
+        private final Object[] array;
+        private final int offset;
+        private final SplitPolicy policy;
+
+        FillTask(Spliterator<T> spliterator, Object[] array, int offset, SplitPolicy policy) {
+            this.spliterator = spliterator;
+            this.array = array;
+            this.offset = offset;
+            this.policy = policy;
+        }
+
+        @Override
+        protected void compute() {
+            Spliterator<T> prefix;
+            if (policy.shouldSplit(spliterator.getExactSizeIfKnown()) && (prefix = spliterator.trySplit()) != null) {
+                // SUBSIZED保证拆分出来的两部分大小都是准确的，前一半写入[offset, offset + prefix的大小)
+                int prefixSize = (int) prefix.getExactSizeIfKnown();
+                invokeAll(new FillTask<>(prefix, array, offset, policy),
+                        new FillTask<>(spliterator, array, offset + prefixSize, policy));
+                return;
+            }
+            int end = offset + (int) spliterator.getExactSizeIfKnown();
+            int[] index = {offset};
+            spliterator.forEachRemaining(t -> {
+                // 不能写到相邻子任务的那一段里
+                if (index[0] >= end) {
+                    throw new IllegalStateException("spliterator produced more elements than it reported");
+                }
+                array[index[0]++] = t;
+            });
+            if (index[0] != end) {
+                throw new IllegalStateException("spliterator produced fewer elements than it reported");
+            }
+        }
+    }
+}
@@ -284,6 +284,9 @@ public class TestCollect {
          */
         dishes = menu.stream().collect(ArrayList::new, List::add, List::addAll);
         System.out.println(dishes);
+        // menu是List，流的大小是已知的，直接分配正好大小的数组，不需要扩容
+        dishes = SizedCollectors.toList(menu.stream());
+        System.out.println(dishes);
 
         /**
          * 开发你自己的收集器,让按质数和非质数分区的实现比上边性能更好
@@ -291,6 +294,13 @@ public class TestCollect {
         Map<Boolean, List<Integer>> partitionPrimes = partitionPrimesWithCustomCollector(10);
         System.out.println(partitionPrimes);
 
+        // 不装箱的分区，每个分区是一个IntList
+        System.out.println(partitionPrimesPrimitive(10));
+
+        // 用分段筛法分区，结果保存在位图里，n = 10^9也只需要约60MB
+        PrimeSieve sieve = partitionPrimesWithSieve(10);
+        System.out.println(sieve.primes().boxed().collect(toList()) + " " + sieve.composites().boxed().collect(toList()));
+
     }
 
     public static class Transaction {
@@ -339,6 +349,29 @@ public class TestCollect {
         }));
     }
 
+    /**
+     * 用IntStream直接分区，结果是Map<Boolean, IntList>，不需要boxed()，也不需要双括号初始化的HashMap子类
+     */
+    public static Map<Boolean, IntList> partitionPrimesPrimitive(int n) {
+        PrimeSieve sieve = PrimeSieve.sieve(n);
+        return PrimitiveCollectors.partitioningBy(IntStream.rangeClosed(2, n), sieve::isPrime);
+    }
+
+    /**
+     * PrimeNumbersCollector(n)事先求出sqrt(n)以内的基础质数，每个拆分独立判断，可以用于并行流
+     */
+    public static Map<Boolean, List<Integer>> partitionPrimesInParallel(int n) {
+        return IntStream.rangeClosed(2, n).boxed().parallel().collect(new PrimeNumbersCollector(n));
+    }
+
+    /**
+     * 用PrimeSieve代替Map<Boolean, List<Integer>>：isPrime就是分区的依据，
+     * primes和composites分别是true和false两个分区，都是不装箱的IntStream
+     */
+    public static PrimeSieve partitionPrimesWithSieve(int n) {
+        return PrimeSieve.sieve(n);
+    }
+
     private static boolean isPrime(int candidate) {
         System.out.println("candidate:" + candidate);
         int candidateRoot = (int) Math.sqrt(candidate);
@@ -7,7 +7,6 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
 
-import static java.util.stream.Collector.Characteristics.CONCURRENT;
 import static java.util.stream.Collector.Characteristics.IDENTITY_FINISH;
 
 /**
@@ -85,12 +84,15 @@ public class ToListCollector<T> implements Collector<T, List<T>, List<T>> {
      * 查地转换为结果R是安全的。
      * ToListCollector是IDENTITY_FINISH的，因为用来累积流中元素的List已经是我们要的最终结果，
      * 用不着进一步转换了，但它并不是UNORDERED的，因为用在有序流上的时候，我们还是希望顺序能够保留在得到的List中。
-     * 最后，它是CONCURRENT的，但我们刚才说过了，仅仅在背后的数据源无序时才会并行处理。
+     * 最后，它不能是CONCURRENT的：CONCURRENT意味着多个线程会同时调用accumulator往同一个累加器里添加元素，
+     * 而supplier返回的是普通的ArrayList，并发add会丢失元素甚至抛出ArrayIndexOutOfBoundsException。
+     * 不声明CONCURRENT时，并行流会给每个拆分一个自己的ArrayList，再用combiner合并，结果是正确的。
+     * 需要真正并发收集时请使用ConcurrentToListCollector。
      *
      * @return
      */
     @Override
     public Set<Characteristics> characteristics() {
-        return Collections.unmodifiableSet(EnumSet.of(IDENTITY_FINISH, CONCURRENT));
+        return Collections.unmodifiableSet(EnumSet.of(IDENTITY_FINISH));
     }
 }
@@ -0,0 +1,499 @@
+package com.chenjj.java8.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.IntPredicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 只取前k个元素的收集器，代替sorted(...).limit(k)
+ * <p>
+ * sorted要把所有元素都放进一个数组再排序，时间O(n log n)，空间O(n)；如果只需要最小（或最大）的k个，
+ * 用一个大小为k的堆就够了：堆顶是目前保留的k个元素中最“差”的一个，新元素只有比堆顶好时才替换堆顶，
+ * 时间O(n log k)，空间O(k)。
+ * <p>
+ * 1、并行流中每个拆分有自己的堆，combiner把右边的堆中的元素逐个放进左边的堆，合并的代价只有O(k log k)；
+ * 2、比较结果相同的元素按它们在流中的先后顺序排列，所以结果和sorted(...).limit(k)完全一样，
+ * 并行时也一样：每个元素都记录了它在所在拆分中的序号，合并时右边的序号整体加上左边的元素个数；
+ * 3、byInt版本相当于Comparator.comparingInt，但每个元素只调用一次keyExtractor，
+ * 之后都是直接比较int，不会反复调用getter，也不会装箱；
+ * 4、smallestIndexes不经过流，直接在int下标上选出前k个，数据保存在并行数组中时不需要先把下标装箱。
+ */
+public final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * 按comparator排序后最前面的k个元素，从小到大排列
+     *
+     * @param k
+     * @param comparator
+     * @param <T>
+     * @return
+     */
+    public static <T> Collector<T, ?, List<T>> smallest(int k, Comparator<? super T> comparator) {
+        checkK(k);
+        return Collector.of(() -> new ObjectHeap<T>(k, comparator), ObjectHeap::offer, ObjectHeap::merge,
+                ObjectHeap::toSortedList);
+    }
+
+    public static <T> Collector<T, ?, List<T>> largest(int k, Comparator<? super T> comparator) {
+        return smallest(k, comparator.reversed());
+    }
+
+    /**
+     * 键最小的k个元素，相当于smallest(k, Comparator.comparingInt(keyExtractor))
+     *
+     * @param k
+     * @param keyExtractor
+     * @param <T>
+     * @return
+     */
+    public static <T> Collector<T, ?, List<T>> smallestByInt(int k, ToIntFunction<? super T> keyExtractor) {
+        checkK(k);
+        return Collector.of(() -> new IntKeyHeap<T>(k, keyExtractor, false), IntKeyHeap::offer, IntKeyHeap::merge,
+                IntKeyHeap::toSortedList);
+    }
+
+    /**
+     * 键最大的k个元素，从大到小排列
+     */
+    public static <T> Collector<T, ?, List<T>> largestByInt(int k, ToIntFunction<? super T> keyExtractor) {
+        checkK(k);
+        return Collector.of(() -> new IntKeyHeap<T>(k, keyExtractor, true), IntKeyHeap::offer, IntKeyHeap::merge,
+                IntKeyHeap::toSortedList);
+    }
+
+    /**
+     * 部分排序：相当于stream.sorted(comparator).limit(k)，但只用一个大小为k的堆。
+     * 返回的流是惰性的，执行终端操作时才会收集stream
+     *
+     * @param stream
+     * @param k
+     * @param comparator
+     * @param <T>
+     * @return
+     */
+    public static <T> Stream<T> partialSort(Stream<T> stream, int k, Comparator<? super T> comparator) {
+        return lazily(stream, smallest(k, comparator));
+    }
+
+    public static <T> Stream<T> partialSortByInt(Stream<T> stream, int k, ToIntFunction<? super T> keyExtractor) {
+        return lazily(stream, smallestByInt(k, keyExtractor));
+    }
+
+    private static <T> Stream<T> lazily(Stream<T> stream, Collector<T, ?, List<T>> collector) {
+        return StreamSupport.stream(() -> stream.collect(collector).spliterator(),
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /**
+     * 键最小的元素，相同时取第一个，和Stream.min(Comparator.comparingInt(keyExtractor))一样，
+     * 但每个元素只调用一次keyExtractor
+     *
+     * @param keyExtractor
+     * @param <T>
+     * @return
+     */
+    public static <T> Collector<T, ?, Optional<T>> minByInt(ToIntFunction<? super T> keyExtractor) {
+        return Collector.of(() -> new IntKeyBest<T>(keyExtractor, false), IntKeyBest::accept, IntKeyBest::merge,
+                IntKeyBest::get);
+    }
+
+    public static <T> Collector<T, ?, Optional<T>> maxByInt(ToIntFunction<? super T> keyExtractor) {
+        return Collector.of(() -> new IntKeyBest<T>(keyExtractor, true), IntKeyBest::accept, IntKeyBest::merge,
+                IntKeyBest::get);
+    }
+
+    /**
+     * 比较两个int下标（例如数组中的槽位）的比较器，避免装箱成Comparator&lt;Integer&gt;
+     */
+    @FunctionalInterface
+    public interface IndexComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * 0到n - 1中满足include的下标里，按comparator排序后最前面的k个，从小到大排列，比较结果相同时下标小的在前。
+     * 适合数据保存在几个并行数组里的情况（例如WordFrequencyMap）：堆里只放int下标，不装箱，也不创建任何对象
+     *
+     * @param k
+     * @param n
+     * @param include
+     * @param comparator
+     * @return
+     */
+    public static int[] smallestIndexes(int k, int n, IntPredicate include, IndexComparator comparator) {
+        checkK(k);
+        IndexHeap heap = new IndexHeap(k, comparator);
+        for (int i = 0; i < n; i++) {
+            if (include.test(i)) {
+                heap.offer(i);
+            }
+        }
+        return heap.toSortedArray();
+    }
+
+    private static void checkK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+    }
+
+    /**
+     * 保留最好的k个元素的大顶堆，堆顶是其中最差的一个。先按comparator比较，相同时按序号比较
+     */
+    private static final class ObjectHeap<T> {
+        private final int k;
+        private final Comparator<? super T> comparator;
+        private Object[] items;
+        private long[] seqs;
+        private int size;
+        // 已经提供过的元素个数，也就是下一个元素的序号
+        private long count;
+
+        ObjectHeap(int k, Comparator<? super T> comparator) {
+            this.k = k;
+            this.comparator = comparator;
+            int capacity = Math.min(k, 16);
+            this.items = new Object[capacity];
+            this.seqs = new long[capacity];
+        }
+
+        void offer(T item) {
+            offer(item, count++);
+        }
+
+        ObjectHeap<T> merge(ObjectHeap<T> right) {
+            // right中的元素都在当前拆分之后
+            for (int i = 0; i < right.size; i++) {
+                offer(right.item(i), count + right.seqs[i]);
+            }
+            count += right.count;
+            return this;
+        }
+
+        private void offer(T item, long seq) {
+            if (size < k) {
+                if (size == items.length) {
+                    int capacity = (int) Math.min(k, size * 2L);
+                    items = Arrays.copyOf(items, capacity);
+                    seqs = Arrays.copyOf(seqs, capacity);
+                }
+                items[size] = item;
+                seqs[size] = seq;
+                siftUp(size++);
+            } else if (k > 0 && compare(item, seq, item(0), seqs[0]) < 0) {
+                items[0] = item;
+                seqs[0] = seq;
+                siftDown(0);
+            }
+        }
+
+        List<T> toSortedList() {
+            // 依次弹出堆顶（最差的），从后往前填，得到从好到差的顺序
+            Object[] sorted = new Object[size];
+            while (size > 0) {
+                sorted[size - 1] = items[0];
+                swap(0, --size);
+                siftDown(0);
+            }
+            List<T> result = new ArrayList<>(sorted.length);
+            for (Object o : sorted) {
+                @SuppressWarnings("unchecked")
+                T t = (T) o;
+                result.add(t);
+            }
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T item(int i) {
+            return (T) items[i];
+        }
+
+        private int compare(T a, long seqA, T b, long seqB) {
+            int c = comparator.compare(a, b);
+            return c != 0 ? c : Long.compare(seqA, seqB);
+        }
+
+        private int compareAt(int i, int j) {
+            return compare(item(i), seqs[i], item(j), seqs[j]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (compareAt(i, parent) <= 0) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && compareAt(child + 1, child) > 0) {
+                    child++;
+                }
+                if (compareAt(i, child) >= 0) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            Object item = items[i];
+            items[i] = items[j];
+            items[j] = item;
+            long seq = seqs[i];
+            seqs[i] = seqs[j];
+            seqs[j] = seq;
+        }
+    }
+
+    /**
+     * 和ObjectHeap一样，但比较的是提前取出的int键。取最大的k个时保存~key：按位取反是单调递减的，
+     * 而且不会像-key那样在Integer.MIN_VALUE上溢出
+     */
+    private static final class IntKeyHeap<T> {
+        private final int k;
+        private final ToIntFunction<? super T> keyExtractor;
+        private final boolean largest;
+        private Object[] items;
+        private int[] keys;
+        private long[] seqs;
+        private int size;
+        private long count;
+
+        IntKeyHeap(int k, ToIntFunction<? super T> keyExtractor, boolean largest) {
+            this.k = k;
+            this.keyExtractor = keyExtractor;
+            this.largest = largest;
+            int capacity = Math.min(k, 16);
+            this.items = new Object[capacity];
+            this.keys = new int[capacity];
+            this.seqs = new long[capacity];
+        }
+
+        void offer(T item) {
+            int key = keyExtractor.applyAsInt(item);
+            offer(item, largest ? ~key : key, count++);
+        }
+
+        IntKeyHeap<T> merge(IntKeyHeap<T> right) {
+            for (int i = 0; i < right.size; i++) {
+                offer(right.items[i], right.keys[i], count + right.seqs[i]);
+            }
+            count += right.count;
+            return this;
+        }
+
+        private void offer(Object item, int key, long seq) {
+            if (size < k) {
+                if (size == items.length) {
+                    int capacity = (int) Math.min(k, size * 2L);
+                    items = Arrays.copyOf(items, capacity);
+                    keys = Arrays.copyOf(keys, capacity);
+                    seqs = Arrays.copyOf(seqs, capacity);
+                }
+                items[size] = item;
+                keys[size] = key;
+                seqs[size] = seq;
+                siftUp(size++);
+            } else if (k > 0 && (key < keys[0] || (key == keys[0] && seq < seqs[0]))) {
+                items[0] = item;
+                keys[0] = key;
+                seqs[0] = seq;
+                siftDown(0);
+            }
+        }
+
+        List<T> toSortedList() {
+            Object[] sorted = new Object[size];
+            while (size > 0) {
+                sorted[size - 1] = items[0];
+                swap(0, --size);
+                siftDown(0);
+            }
+            List<T> result = new ArrayList<>(sorted.length);
+            for (Object o : sorted) {
+                @SuppressWarnings("unchecked")
+                T t = (T) o;
+                result.add(t);
+            }
+            return result;
+        }
+
+        // i是否比j差（键更大，或者键相同但序号更大）
+        private boolean worse(int i, int j) {
+            return keys[i] > keys[j] || (keys[i] == keys[j] && seqs[i] > seqs[j]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!worse(i, parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && worse(child + 1, child)) {
+                    child++;
+                }
+                if (!worse(child, i)) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            Object item = items[i];
+            items[i] = items[j];
+            items[j] = item;
+            int key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+            long seq = seqs[i];
+            seqs[i] = seqs[j];
+            seqs[j] = seq;
+        }
+    }
+
+    /**
+     * 和ObjectHeap一样，但元素是int下标，比较结果相同时按下标比较，所以不需要额外的序号
+     */
+    private static final class IndexHeap {
+        private final int k;
+        private final IndexComparator comparator;
+        private int[] items;
+        private int size;
+
+        IndexHeap(int k, IndexComparator comparator) {
+            this.k = k;
+            this.comparator = comparator;
+            this.items = new int[Math.min(k, 16)];
+        }
+
+        void offer(int index) {
+            if (size < k) {
+                if (size == items.length) {
+                    items = Arrays.copyOf(items, (int) Math.min(k, size * 2L));
+                }
+                items[size] = index;
+                siftUp(size++);
+            } else if (k > 0 && compare(index, items[0]) < 0) {
+                items[0] = index;
+                siftDown(0);
+            }
+        }
+
+        int[] toSortedArray() {
+            int[] sorted = new int[size];
+            while (size > 0) {
+                sorted[size - 1] = items[0];
+                items[0] = items[--size];
+                siftDown(0);
+            }
+            return sorted;
+        }
+
+        private int compare(int a, int b) {
+            int c = comparator.compare(a, b);
+            return c != 0 ? c : Integer.compare(a, b);
+        }
+
+        private void siftUp(int i) {
+            int index = items[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (compare(index, items[parent]) <= 0) {
+                    break;
+                }
+                items[i] = items[parent];
+                i = parent;
+            }
+            items[i] = index;
+        }
+
+        private void siftDown(int i) {
+            int index = items[i];
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && compare(items[child + 1], items[child]) > 0) {
+                    child++;
+                }
+                if (compare(index, items[child]) >= 0) {
+                    break;
+                }
+                items[i] = items[child];
+                i = child;
+            }
+            items[i] = index;
+        }
+    }
+
+    /**
+     * minByInt、maxByInt的累加器，键相同时保留先出现的元素
+     */
+    private static final class IntKeyBest<T> {
+        private final ToIntFunction<? super T> keyExtractor;
+        private final boolean max;
+        private T best;
+        private int bestKey;
+        private boolean present;
+
+        IntKeyBest(ToIntFunction<? super T> keyExtractor, boolean max) {
+            this.keyExtractor = keyExtractor;
+            this.max = max;
+        }
+
+        void accept(T item) {
+            accept(item, keyExtractor.applyAsInt(item));
+        }
+
+        private void accept(T item, int key) {
+            if (!present || (max ? key > bestKey : key < bestKey)) {
+                best = item;
+                bestKey = key;
+                present = true;
+            }
+        }
+
+        IntKeyBest<T> merge(IntKeyBest<T> right) {
+            if (right.present) {
+                accept(right.best, right.bestKey);
+            }
+            return this;
+        }
+
+        // 和Stream.min/max一样，最好的元素是null时Optional.of抛出NullPointerException
+        Optional<T> get() {
+            return present ? Optional.of(best) : Optional.empty();
+        }
+    }
+}
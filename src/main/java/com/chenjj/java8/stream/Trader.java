@@ -1,9 +1,14 @@
 package com.chenjj.java8.stream;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Trader {
 
     private String name;
     private String city;
+    // 关心城市变化的监听器，例如TransactionRepository的城市索引，没有监听器时为null
+    private List<CityListener> cityListeners;
 
     public Trader(String n, String c) {
         this.name = n;
@@ -19,10 +24,37 @@ public class Trader {
     }
 
     public void setCity(String newCity) {
+        String oldCity = this.city;
         this.city = newCity;
+        if (cityListeners != null) {
+            for (CityListener listener : new ArrayList<>(cityListeners)) {
+                listener.cityChanged(this, oldCity, newCity);
+            }
+        }
+    }
+
+    public void addCityListener(CityListener listener) {
+        if (cityListeners == null) {
+            cityListeners = new ArrayList<>();
+        }
+        cityListeners.add(listener);
+    }
+
+    public void removeCityListener(CityListener listener) {
+        if (cityListeners != null) {
+            cityListeners.remove(listener);
+        }
     }
 
     public String toString() {
         return "Trader:" + this.name + " in " + this.city;
     }
-}
\ No newline at end of file
+
+    /**
+     * 交易员的城市改变时收到通知
+     */
+    @FunctionalInterface
+    public interface CityListener {
+        void cityChanged(Trader trader, String oldCity, String newCity);
+    }
+}
@@ -0,0 +1,273 @@
+package com.chenjj.java8.stream;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 带二级索引的交易仓库
+ * <p>
+ * PuttingIntoPractice中的“2011年的交易”“剑桥的交易员”“有没有米兰的交易员”都是对整个列表的
+ * filter/anyMatch，每次都要扫描所有交易。这里维护几个索引：
+ * 1、按交易员分组的交易（IdentityHashMap，Trader没有重写equals，本来就是按对象区分的）；
+ * 2、城市 -> 交易员、姓名 -> 交易员的哈希索引，查询时再通过第1个索引找到交易；
+ * 3、年份 -> 交易的有序索引（TreeMap），可以查某一年，也可以查一个年份区间。
+ * query()返回的Query可以组合多个条件，执行时先估计每个可用索引会命中多少交易，
+ * 选择命中最少的那个索引取出候选交易，其余条件再逐个过滤；没有可用的索引时才全表扫描。
+ * <p>
+ * 城市是Trader中唯一可变的属性。仓库在每个交易员上注册一个CityListener，setCity时只需要把
+ * 这个交易员从旧城市的集合移到新城市的集合，不需要重建索引。不再使用仓库时调用detach注销监听器，
+ * 否则交易员会一直引用着这个仓库。
+ * 这个类不是线程安全的。
+ */
+public class TransactionRepository {
+    private final List<Transaction> transactions = new ArrayList<>();
+    private final Map<Trader, List<Transaction>> byTrader = new IdentityHashMap<>();
+    private final Map<String, Set<Trader>> tradersByCity = new HashMap<>();
+    private final Map<String, Set<Trader>> tradersByName = new HashMap<>();
+    private final NavigableMap<Integer, List<Transaction>> byYear = new TreeMap<>();
+    private final Trader.CityListener cityListener = this::cityChanged;
+
+    public TransactionRepository() {
+    }
+
+    public TransactionRepository(Collection<Transaction> transactions) {
+        transactions.forEach(this::add);
+    }
+
+    public void add(Transaction transaction) {
+        Trader trader = transaction.getTrader();
+        List<Transaction> ofTrader = byTrader.get(trader);
+        if (ofTrader == null) {
+            ofTrader = new ArrayList<>();
+            byTrader.put(trader, ofTrader);
+            tradersByCity.computeIfAbsent(trader.getCity(), k -> new LinkedHashSet<>()).add(trader);
+            tradersByName.computeIfAbsent(trader.getName(), k -> new LinkedHashSet<>()).add(trader);
+            trader.addCityListener(cityListener);
+        }
+        ofTrader.add(transaction);
+        byYear.computeIfAbsent(transaction.getYear(), k -> new ArrayList<>()).add(transaction);
+        transactions.add(transaction);
+    }
+
+    /**
+     * 注销在所有交易员上注册的监听器，之后城市索引不再更新
+     */
+    public void detach() {
+        for (Trader trader : byTrader.keySet()) {
+            trader.removeCityListener(cityListener);
+        }
+    }
+
+    private void cityChanged(Trader trader, String oldCity, String newCity) {
+        Set<Trader> old = tradersByCity.get(oldCity);
+        if (old != null) {
+            old.remove(trader);
+            if (old.isEmpty()) {
+                tradersByCity.remove(oldCity);
+            }
+        }
+        tradersByCity.computeIfAbsent(newCity, k -> new LinkedHashSet<>()).add(trader);
+    }
+
+    public int size() {
+        return transactions.size();
+    }
+
+    public List<Transaction> findByYear(int year) {
+        return Collections.unmodifiableList(byYear.getOrDefault(year, Collections.emptyList()));
+    }
+
+    /**
+     * 年份在[fromYear, toYear]之间的交易，按年份排列。fromYear大于toYear时和全表扫描一样返回空列表
+     *
+     * @param fromYear
+     * @param toYear
+     * @return
+     */
+    public List<Transaction> findByYearBetween(int fromYear, int toYear) {
+        List<Transaction> result = new ArrayList<>();
+        yearRange(fromYear, toYear).forEach(result::addAll);
+        return result;
+    }
+
+    // TreeMap.subMap在fromKey大于toKey时会抛出IllegalArgumentException，这样的区间里本来就没有交易
+    private Collection<List<Transaction>> yearRange(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            return Collections.emptyList();
+        }
+        return byYear.subMap(fromYear, true, toYear, true).values();
+    }
+
+    public Set<Trader> findTradersByCity(String city) {
+        return Collections.unmodifiableSet(tradersByCity.getOrDefault(city, Collections.emptySet()));
+    }
+
+    public Set<Trader> findTradersByName(String name) {
+        return Collections.unmodifiableSet(tradersByName.getOrDefault(name, Collections.emptySet()));
+    }
+
+    public boolean anyTraderInCity(String city) {
+        return tradersByCity.containsKey(city);
+    }
+
+    public List<Transaction> findByCity(String city) {
+        return transactionsOf(tradersByCity.get(city));
+    }
+
+    public List<Transaction> findByTraderName(String name) {
+        return transactionsOf(tradersByName.get(name));
+    }
+
+    private List<Transaction> transactionsOf(Set<Trader> traders) {
+        List<Transaction> result = new ArrayList<>();
+        if (traders != null) {
+            for (Trader trader : traders) {
+                result.addAll(byTrader.get(trader));
+            }
+        }
+        return result;
+    }
+
+    private int countOf(Set<Trader> traders) {
+        int count = 0;
+        if (traders != null) {
+            for (Trader trader : traders) {
+                count += byTrader.get(trader).size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Query选择的索引，SCAN表示没有可用的索引，全表扫描
+     */
+    public enum Index {
+        YEAR, CITY, TRADER_NAME, SCAN
+    }
+
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * 组合查询条件，执行时自动选择索引
+     */
+    public final class Query {
+        private Integer fromYear;
+        private Integer toYear;
+        private String city;
+        private String traderName;
+        private Predicate<Transaction> filter = t -> true;
+
+        private Query() {
+        }
+
+        public Query year(int year) {
+            return yearBetween(year, year);
+        }
+
+        public Query yearBetween(int fromYear, int toYear) {
+            this.fromYear = fromYear;
+            this.toYear = toYear;
+            return this;
+        }
+
+        public Query city(String city) {
+            this.city = city;
+            return this;
+        }
+
+        public Query traderName(String traderName) {
+            this.traderName = traderName;
+            return this;
+        }
+
+        /**
+         * 没有索引可用的其他条件，总是在候选交易上逐个过滤
+         *
+         * @param predicate
+         * @return
+         */
+        public Query filter(Predicate<Transaction> predicate) {
+            this.filter = this.filter.and(predicate);
+            return this;
+        }
+
+        /**
+         * 执行时使用的索引
+         *
+         * @return
+         */
+        public Index plan() {
+            Index best = Index.SCAN;
+            int bestCount = transactions.size();
+            if (fromYear != null) {
+                int count = 0;
+                for (List<Transaction> list : yearRange(fromYear, toYear)) {
+                    count += list.size();
+                }
+                if (count <= bestCount) {
+                    best = Index.YEAR;
+                    bestCount = count;
+                }
+            }
+            if (city != null) {
+                int count = countOf(tradersByCity.get(city));
+                if (count <= bestCount) {
+                    best = Index.CITY;
+                    bestCount = count;
+                }
+            }
+            if (traderName != null && countOf(tradersByName.get(traderName)) <= bestCount) {
+                best = Index.TRADER_NAME;
+            }
+            return best;
+        }
+
+        public List<Transaction> list() {
+            return stream().collect(Collectors.toList());
+        }
+
+        public Stream<Transaction> stream() {
+            List<Transaction> candidates;
+            switch (plan()) {
+                case YEAR:
+                    candidates = findByYearBetween(fromYear, toYear);
+                    break;
+                case CITY:
+                    candidates = findByCity(city);
+                    break;
+                case TRADER_NAME:
+                    candidates = findByTraderName(traderName);
+                    break;
+                default:
+                    candidates = transactions;
+            }
+            // 被选中的索引已经满足的条件再检查一遍也不会出错，这里不做区分，保持简单
+            return candidates.stream().filter(this::matches);
+        }
+
+        public boolean anyMatch() {
+            return stream().findAny().isPresent();
+        }
+
+        private boolean matches(Transaction t) {
+            return (fromYear == null || (t.getYear() >= fromYear && t.getYear() <= toYear))
+                    && (city == null || city.equals(t.getTrader().getCity()))
+                    && (traderName == null || traderName.equals(t.getTrader().getName()))
+                    && filter.test(t);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.chenjj.java8.stream;
+
+import com.chenjj.java8.stream.parallel.ParallelReductions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * 按列存储的交易表
+ * <p>
+ * PuttingIntoPractice中的查询都在List&lt;Transaction&gt;上进行：每个Transaction是一个对象，
+ * 还要经过Trader对象才能拿到城市，getValue的结果还要装箱成Integer，数据量大时主要的时间都花在
+ * 追指针和缓存未命中上。这里把每一列存成一个数组：
+ * 1、year、value直接存成int[]；
+ * 2、交易员和城市做字典编码：每个不同的名字只保存一次，列里存的是它在字典中的编号（int）；
+ * 3、查询就是对一两个int[]的顺序扫描，没有分支或者只有简单的比较，JIT可以把循环向量化，
+ * 数据量很大时还可以分块并行扫描，速度主要受内存带宽限制。
+ * 过滤的结果是满足条件的行号组成的int[]（选择向量），可以继续传给排序、求和等操作。
+ * <p>
+ * 注意：城市是在add时从Trader中读出来的快照，之后调用Trader.setCity不会改变表中的数据。
+ */
+public class TransactionTable {
+    // 数据量超过这个行数时分块并行扫描
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    // 最多能保存的行数，有的虚拟机不能分配正好Integer.MAX_VALUE长的数组
+    static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private int[] years;
+    private int[] values;
+    private int[] traderIds;
+    private int[] cityIds;
+    private int size;
+
+    private final Dictionary traders = new Dictionary();
+    private final Dictionary cities = new Dictionary();
+
+    public TransactionTable() {
+        this(16);
+    }
+
+    public TransactionTable(int initialCapacity) {
+        years = new int[initialCapacity];
+        values = new int[initialCapacity];
+        traderIds = new int[initialCapacity];
+        cityIds = new int[initialCapacity];
+    }
+
+    public static TransactionTable from(Collection<Transaction> transactions) {
+        TransactionTable table = new TransactionTable(transactions.size());
+        transactions.forEach(table::add);
+        return table;
+    }
+
+    public static void main(String[] args) {
+        Trader raoul = new Trader("Raoul", "Cambridge");
+        Trader mario = new Trader("Mario", "Milan");
+        Trader alan = new Trader("Alan", "Cambridge");
+        Trader brian = new Trader("Brian", "Cambridge");
+        TransactionTable table = from(Arrays.asList(
+                new Transaction(brian, 2011, 300),
+                new Transaction(raoul, 2012, 1000),
+                new Transaction(raoul, 2011, 400),
+                new Transaction(mario, 2012, 710),
+                new Transaction(mario, 2012, 700),
+                new Transaction(alan, 2012, 950)
+        ));
+        // 找出2011年的所有交易并按交易额排序（从低到高）
+        for (int row : table.sortByValue(table.rowsInYear(2011))) {
+            System.out.println(table.traderName(row) + " " + table.year(row) + " " + table.value(row));
+        }
+        // 交易员都在哪些不同的城市工作过
+        System.out.println(table.distinctCities());
+        // 查找所有来自于剑桥的交易员，并按姓名排序
+        System.out.println(table.traderNamesInCity("Cambridge"));
+        // 有没有交易员是在米兰工作的
+        System.out.println(table.anyInCity("Milan"));
+        // 所有交易中，最高和最低的交易额
+        System.out.println(table.maxValue().getAsInt() + " " + table.minValue().getAsInt());
+        System.out.println(table.sumValueInYear(2012));
+    }
+
+    public void add(Transaction transaction) {
+        Trader trader = transaction.getTrader();
+        add(trader.getName(), trader.getCity(), transaction.getYear(), transaction.getValue());
+    }
+
+    public void add(String traderName, String city, int year, int value) {
+        if (size == years.length) {
+            int capacity = newCapacity(size);
+            years = Arrays.copyOf(years, capacity);
+            values = Arrays.copyOf(values, capacity);
+            traderIds = Arrays.copyOf(traderIds, capacity);
+            cityIds = Arrays.copyOf(cityIds, capacity);
+        }
+        years[size] = year;
+        values[size] = value;
+        traderIds[size] = traders.intern(traderName);
+        cityIds[size] = cities.intern(city);
+        size++;
+    }
+
+    /**
+     * 扩容1.5倍，在long中计算避免溢出，最多扩到MAX_CAPACITY，已经满了时和ArrayList一样抛出OutOfMemoryError
+     */
+    private static int newCapacity(int size) {
+        if (size >= MAX_CAPACITY) {
+            throw new OutOfMemoryError("TransactionTable cannot hold more than " + MAX_CAPACITY + " rows");
+        }
+        return (int) Math.min(MAX_CAPACITY, Math.max(16L, (long) size + (size >> 1)));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int year(int row) {
+        checkRow(row);
+        return years[row];
+    }
+
+    public int value(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    public String traderName(int row) {
+        checkRow(row);
+        return traders.valueOf(traderIds[row]);
+    }
+
+    public String city(int row) {
+        checkRow(row);
+        return cities.valueOf(cityIds[row]);
+    }
+
+    /**
+     * 指定年份的所有行号，按行号从小到大排列
+     *
+     * @param year
+     * @return
+     */
+    public int[] rowsInYear(int year) {
+        return select(years, year);
+    }
+
+    /**
+     * 指定城市的所有行号。城市不在字典中时直接返回空数组，不需要扫描
+     *
+     * @param city
+     * @return
+     */
+    public int[] rowsInCity(String city) {
+        int id = cities.idOf(city);
+        return id < 0 ? new int[0] : select(cityIds, id);
+    }
+
+    private int[] select(int[] column, int key) {
+        // 第一遍只计数，第二遍按正好的大小填充，两遍都是简单的顺序扫描
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (column[i] == key) {
+                count++;
+            }
+        }
+        int[] rows = new int[count];
+        int k = 0;
+        for (int i = 0; k < count; i++) {
+            if (column[i] == key) {
+                rows[k++] = i;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 把rows按交易额从低到高排序，交易额相同时按行号排序（和稳定排序的结果一样）
+     * <p>
+     * 把交易额和行号打包成一个long，交易额在高32位，行号（非负）在低32位，按long排序就是先比较交易额、
+     * 再比较行号，不需要Comparator，也不需要装箱
+     *
+     * @param rows
+     * @return 排好序的新数组
+     */
+    public int[] sortByValue(int[] rows) {
+        long[] keys = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            checkRow(row);
+            keys[i] = ((long) values[row] << 32) | row;
+        }
+        if (keys.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(keys);
+        } else {
+            Arrays.sort(keys);
+        }
+        int[] sorted = new int[rows.length];
+        for (int i = 0; i < keys.length; i++) {
+            sorted[i] = (int) keys[i];
+        }
+        return sorted;
+    }
+
+    /**
+     * 所有交易额的和，用long避免溢出，数据量大时并行归约
+     *
+     * @return
+     */
+    public long sumValue() {
+        return ParallelReductions.mapReduce(values, 0, size, v -> v, 0L, Long::sum, ForkJoinPool.commonPool());
+    }
+
+    public OptionalInt maxValue() {
+        if (size == 0) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(ParallelReductions.reduce(values, 0, size, Integer.MIN_VALUE, Math::max,
+                ForkJoinPool.commonPool()));
+    }
+
+    public OptionalInt minValue() {
+        if (size == 0) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(ParallelReductions.reduce(values, 0, size, Integer.MAX_VALUE, Math::min,
+                ForkJoinPool.commonPool()));
+    }
+
+    /**
+     * 指定年份的交易额之和。循环里没有分支：不是这一年的交易加0，这样的循环可以被向量化
+     *
+     * @param year
+     * @return
+     */
+    public long sumValueInYear(int year) {
+        if (size < PARALLEL_THRESHOLD) {
+            return sumValueInYear(year, 0, size);
+        }
+        // size接近Integer.MAX_VALUE时size + PARALLEL_THRESHOLD和(c + 1) * PARALLEL_THRESHOLD都会溢出，
+        // 所以块数向上取整时不做加法，每块的上界用剩余的个数来算
+        int chunks = size / PARALLEL_THRESHOLD + (size % PARALLEL_THRESHOLD == 0 ? 0 : 1);
+        return IntStream.range(0, chunks).parallel()
+                .mapToLong(c -> {
+                    int from = c * PARALLEL_THRESHOLD;
+                    return sumValueInYear(year, from, from + Math.min(size - from, PARALLEL_THRESHOLD));
+                })
+                .sum();
+    }
+
+    private long sumValueInYear(int year, int from, int to) {
+        int[] y = years;
+        int[] v = values;
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += y[i] == year ? v[i] : 0;
+        }
+        return sum;
+    }
+
+    /**
+     * 不同的城市，按第一次出现的顺序排列（和distinct()一样）
+     * 只需要一个按城市编号索引的boolean[]，不需要对字符串做哈希
+     *
+     * @return
+     */
+    public List<String> distinctCities() {
+        boolean[] seen = new boolean[cities.size()];
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < size && result.size() < seen.length; i++) {
+            int id = cityIds[i];
+            if (!seen[id]) {
+                seen[id] = true;
+                result.add(cities.valueOf(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在指定城市有交易的交易员姓名，去重并按字母顺序排序
+     *
+     * @param city
+     * @return
+     */
+    public List<String> traderNamesInCity(String city) {
+        int cityId = cities.idOf(city);
+        List<String> result = new ArrayList<>();
+        if (cityId < 0) {
+            return result;
+        }
+        boolean[] seen = new boolean[traders.size()];
+        for (int i = 0; i < size; i++) {
+            if (cityIds[i] == cityId && !seen[traderIds[i]]) {
+                seen[traderIds[i]] = true;
+                result.add(traders.valueOf(traderIds[i]));
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    public boolean anyInCity(String city) {
+        int id = cities.idOf(city);
+        if (id < 0) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (cityIds[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+        }
+    }
+
+    /**
+     * 字符串字典：每个不同的字符串分配一个从0开始的连续编号
+     */
+    private static final class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        int intern(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                values.add(value);
+                ids.put(value, id);
+            }
+            return id;
+        }
+
+        int idOf(String value) {
+            Integer id = ids.get(value);
+            return id == null ? -1 : id;
+        }
+
+        String valueOf(int id) {
+            return values.get(id);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
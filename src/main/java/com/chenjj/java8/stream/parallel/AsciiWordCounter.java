@@ -0,0 +1,113 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 直接在UTF-8字节上统计单词数，ASCII文本一次检查8个字节
+ * <p>
+ * 日志基本上都是ASCII文本，逐个字符调用Character.isWhitespace很浪费。这里用SWAR（SIMD within a register）
+ * 的技巧：把8个字节读成一个long，用几次加法和位运算同时判断这8个字节是不是空白字符，
+ * 得到一个每个字节最高位表示“是空白”的掩码，再用Long.bitCount数出其中有几个单词的开头
+ * （当前字节不是空白而前一个字节是空白）。
+ * 只有当这8个字节中出现了非ASCII字节（最高位为1）时，才退回到逐个解码UTF-8码点并调用
+ * Character.isWhitespace的慢速路径。
+ * <p>
+ * ASCII中Character.isWhitespace认为是空白的字符是0x09~0x0D和0x1C~0x20两个区间。对于最高位为0的
+ * 字节x，x + (0x80 - lo)的最高位为1当且仅当x >= lo；x + (0x7F - hi)的最高位为1当且仅当x > hi，
+ * 而且这两个加法的结果都不会超过0xFF，不会向相邻的字节进位，所以8个字节可以在一个long里同时比较。
+ */
+public final class AsciiWordCounter {
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long ONES = 0x0101010101010101L;
+
+    private AsciiWordCounter() {
+    }
+
+    public static long countWords(byte[] utf8) {
+        return countWords(utf8, 0, utf8.length);
+    }
+
+    public static long countWords(byte[] utf8, int from, int to) {
+        return scan(ByteBuffer.wrap(utf8), from, to).getCounter();
+    }
+
+    /**
+     * 统计buffer中position到limit之间的单词数，不修改buffer的position
+     *
+     * @param buffer
+     * @return
+     */
+    public static long countWords(ByteBuffer buffer) {
+        return scan(buffer, buffer.position(), buffer.limit()).getCounter();
+    }
+
+    /**
+     * 扫描[from, to)区间，结果可以和相邻区间的MutableWordCounter合并
+     *
+     * @param buffer
+     * @param from
+     * @param to
+     * @return
+     */
+    static MutableWordCounter scan(ByteBuffer buffer, int from, int to) {
+        if (from < 0 || from > to || to > buffer.limit()) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", limit: " + buffer.limit());
+        }
+        if (from == to) {
+            return new MutableWordCounter();
+        }
+        // 用小端序读取，这样第i个字节正好位于long的第8i~8i+7位，前一个字节在更低的位上
+        ByteBuffer buf = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        boolean startsWithWord = !Character.isWhitespace(Utf8.codePoint(Utf8.decode(buf, from, to)));
+        long counter = 0;
+        boolean lastSpace = true;
+        int i = from;
+        while (i < to) {
+            if (i + 8 <= to) {
+                long word = buf.getLong(i);
+                if ((word & HIGH_BITS) == 0) {
+                    long spaces = whitespaceMask(word);
+                    // 前一个字节是空白：把空白掩码左移一个字节，最低的字节由上一批的最后一个字节决定
+                    long previousSpaces = (spaces << 8) | (lastSpace ? 0x80L : 0L);
+                    counter += Long.bitCount(~spaces & previousSpaces & HIGH_BITS);
+                    // 最高字节的最高位就是long的符号位
+                    lastSpace = spaces < 0;
+                    i += 8;
+                    continue;
+                }
+            }
+            // 出现了非ASCII字节或者剩下不足8个字节：逐个码点处理，直到越过这8个字节
+            int limit = Math.min(i + 8, to);
+            while (i < limit) {
+                long decoded = Utf8.decode(buf, i, to);
+                i += Utf8.length(decoded);
+                if (Character.isWhitespace(Utf8.codePoint(decoded))) {
+                    lastSpace = true;
+                } else {
+                    if (lastSpace) {
+                        counter++;
+                    }
+                    lastSpace = false;
+                }
+            }
+        }
+        return new MutableWordCounter(counter, lastSpace, false, startsWithWord);
+    }
+
+    /**
+     * 每个ASCII字节中，空白字符的最高位为1，其余位都为0
+     *
+     * @param word 8个最高位都为0的字节
+     * @return
+     */
+    static long whitespaceMask(long word) {
+        return inRange(word, 0x09, 0x0D) | inRange(word, 0x1C, 0x20);
+    }
+
+    private static long inRange(long word, int lo, int hi) {
+        long atLeastLo = word + ONES * (0x80 - lo);
+        long aboveHi = word + ONES * (0x7F - hi);
+        return atLeastLo & ~aboveHi & HIGH_BITS;
+    }
+}
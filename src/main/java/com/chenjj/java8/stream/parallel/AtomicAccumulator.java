@@ -0,0 +1,21 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用AtomicLong实现的线程安全累加器
+ * <p>
+ * 和Accumulator不同，这里的add是一个CAS操作，结果总是正确的。但所有线程都在同一个内存位置上做
+ * CAS，核数越多竞争越激烈：CAS失败就要重试，缓存行也会在各个核之间来回传递。
+ */
+public class AtomicAccumulator {
+    private final AtomicLong total = new AtomicLong();
+
+    public void add(long value) {
+        total.addAndGet(value);
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+}
@@ -0,0 +1,77 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * 遍历CharSequence（String、StringBuilder、CharBuffer等）中char的Spliterator.OfInt
+ * <p>
+ * 和WordCounterSpliterator相比：元素是基本类型的int，不需要装箱成Character；拆分时只是把
+ * [index, fence)区间一分为二，不会像substring那样复制字符；配合MutableWordCounter使用时，
+ * 因为合并时会处理跨边界的单词，所以也不需要在空格处拆分。
+ * Java 8中CharSequence.chars()的默认实现基于迭代器，几乎无法拆分，所以这里自己实现一个。
+ */
+public class CharSequenceSpliterator implements Spliterator.OfInt {
+    // 小于这个长度就不再拆分
+    static final int MIN_SPLIT_SIZE = 1 << 12;
+
+    private final CharSequence chars;
+    private int index;
+    private final int fence;
+
+    public CharSequenceSpliterator(CharSequence chars) {
+        this(chars, 0, chars.length());
+    }
+
+    public CharSequenceSpliterator(CharSequence chars, int from, int to) {
+        if (from < 0 || from > to || to > chars.length()) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + chars.length());
+        }
+        this.chars = chars;
+        this.index = from;
+        this.fence = to;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        if (index < fence) {
+            action.accept(chars.charAt(index++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        CharSequence cs = chars;
+        int hi = fence;
+        int i = index;
+        // 先把index移到末尾，和JDK中的实现一样，即使action抛出异常也不会重复遍历
+        index = hi;
+        for (; i < hi; i++) {
+            action.accept(cs.charAt(i));
+        }
+    }
+
+    @Override
+    public OfInt trySplit() {
+        int size = fence - index;
+        if (size < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        int middle = index + size / 2;
+        CharSequenceSpliterator prefix = new CharSequenceSpliterator(chars, index, middle);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED + SIZED + SUBSIZED + NONNULL + IMMUTABLE;
+    }
+}
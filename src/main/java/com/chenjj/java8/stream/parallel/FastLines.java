@@ -0,0 +1,202 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 用内存映射文件代替Files.lines读取UTF-8文本文件的每一行
+ * <p>
+ * Files.lines经过BufferedReader和CharsetDecoder，每一行都要先解码到StringBuilder，再创建一个String；
+ * 而且它的Spliterator只能按批次拆分，并行效果很差。这里的做法是：
+ * 1、文件按不超过1G的区域映射（一个MappedByteBuffer最多2G），区域的边界都调整到换行符之后，
+ * 所以不会把一行拆到两个区域里；
+ * 2、区域之间可以直接拆分，区域内部再交给MappedLineSpliterator在换行符处拆分，可以充分并行；
+ * 3、流中的元素是可以重复使用的CharSequence，只在当前回调中有效。需要保留某一行时调用toString，
+ * 或者直接使用lineStrings。
+ * 超过一个区域长度的一行会在区域边界处被拆成两行，正常的文本文件不会遇到这种情况。
+ */
+public final class FastLines {
+    // 每个映射区域的最大字节数
+    static final int MAX_REGION_SIZE = 1 << 30;
+
+    private FastLines() {
+    }
+
+    /**
+     * 文件中的每一行，元素会被重复使用，流关闭时关闭文件
+     *
+     * @param file UTF-8编码的文本文件
+     * @return
+     * @throws IOException
+     */
+    public static Stream<CharSequence> lines(Path file) throws IOException {
+        return lines(file, MAX_REGION_SIZE);
+    }
+
+    /**
+     * 和Files.lines一样返回String，每一行都会复制一次，但仍然比Files.lines少一次解码的中间复制
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static Stream<String> lineStrings(Path file) throws IOException {
+        return lines(file).map(CharSequence::toString);
+    }
+
+    static Stream<CharSequence> lines(Path file, int maxRegionSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long[] bounds = regionBounds(channel, maxRegionSize);
+            return StreamSupport.stream(new FileLineSpliterator(channel, bounds, 0, bounds.length - 1), false)
+                    .onClose(() -> {
+                        try {
+                            channel.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 计算每个映射区域的边界，除了最后一个区域，每个区域都结束在一个\n之后
+     */
+    private static long[] regionBounds(FileChannel channel, int maxRegionSize) throws IOException {
+        long size = channel.size();
+        long[] bounds = new long[(int) (size / maxRegionSize) + 2];
+        int count = 0;
+        long position = 0;
+        bounds[count++] = 0;
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        while (size - position > maxRegionSize) {
+            long end = position + maxRegionSize;
+            long newline = lastNewline(channel, position, end, probe);
+            // 整个区域都没有换行符时只能在区域边界处截断
+            end = newline < 0 ? end : newline + 1;
+            bounds[count++] = end;
+            position = end;
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count * 2);
+            }
+        }
+        if (position < size || count == 1) {
+            bounds[count++] = size;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    // [from, to)中最后一个\n的位置，没有时返回-1
+    private static long lastNewline(FileChannel channel, long from, long to, ByteBuffer probe) throws IOException {
+        long end = to;
+        while (end > from) {
+            long start = Math.max(from, end - probe.capacity());
+            probe.clear();
+            probe.limit((int) (end - start));
+            while (probe.hasRemaining()) {
+                if (channel.read(probe, start + probe.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = probe.position() - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') {
+                    return start + i;
+                }
+            }
+            end = start;
+        }
+        return -1;
+    }
+
+    /**
+     * 遍历一组映射区域。区域多于一个时按区域拆分，只剩一个区域时映射它，之后交给MappedLineSpliterator拆分
+     */
+    private static final class FileLineSpliterator implements Spliterator<CharSequence> {
+        private final FileChannel channel;
+        private final long[] bounds;
+        private int lo;
+        private final int hi;
+        private MappedLineSpliterator current;
+
+        FileLineSpliterator(FileChannel channel, long[] bounds, int lo, int hi) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super CharSequence> action) {
+            while (true) {
+                if (current == null) {
+                    if (lo >= hi) {
+                        return false;
+                    }
+                    current = map(lo++);
+                }
+                if (current.tryAdvance(action)) {
+                    return true;
+                }
+                current = null;
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super CharSequence> action) {
+            if (current != null) {
+                current.forEachRemaining(action);
+                current = null;
+            }
+            while (lo < hi) {
+                map(lo++).forEachRemaining(action);
+            }
+        }
+
+        @Override
+        public Spliterator<CharSequence> trySplit() {
+            if (current == null && hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                FileLineSpliterator prefix = new FileLineSpliterator(channel, bounds, lo, mid);
+                lo = mid;
+                return prefix;
+            }
+            if (current == null && lo < hi) {
+                current = map(lo++);
+            }
+            return current == null ? null : current.trySplit();
+        }
+
+        private MappedLineSpliterator map(int region) {
+            long position = bounds[region];
+            long size = bounds[region + 1] - position;
+            try {
+                return new MappedLineSpliterator(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            long size = current == null ? 0 : current.estimateSize();
+            return size + (bounds[hi] - bounds[lo]);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED + NONNULL;
+        }
+    }
+}
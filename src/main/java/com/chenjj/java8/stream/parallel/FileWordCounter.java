@@ -0,0 +1,69 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.StreamSupport;
+
+/**
+ * 用内存映射文件并行统计UTF-8文本文件中的单词数
+ * <p>
+ * 文件不会被读进堆内存：每次用FileChannel.map映射一个区域（一个MappedByteBuffer最多只能映射2G，
+ * 这里每个区域最多1G），在这个区域上创建Utf8ByteBufferSpliterator并行计数，处理完再映射下一个区域。
+ * 所有的拆分都只是字节偏移，页面由操作系统按需换入换出，所以可以处理比堆还大的文件。
+ * <p>
+ * 相邻区域的边界处可能正好有一个单词被拆成两半，每个区域的结果都是一个MutableWordCounter，
+ * 按顺序合并时它会处理跨边界的单词；区域的边界还会往前调整到一个UTF-8序列的开头，保证不会把一个字符拆开。
+ * 注意：MappedByteBuffer要等到被垃圾回收时才会解除映射，Java 8没有提供立即解除映射的公开API。
+ */
+public final class FileWordCounter {
+    // 每个映射区域的最大字节数
+    static final int MAX_REGION_SIZE = 1 << 30;
+
+    private FileWordCounter() {
+    }
+
+    public static long countWords(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return countWords(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * 统计channel中从position开始的size个字节里的单词数
+     *
+     * @param channel
+     * @param position
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    public static long countWords(FileChannel channel, long position, long size) throws IOException {
+        return countWords(channel, position, size, MAX_REGION_SIZE);
+    }
+
+    static long countWords(FileChannel channel, long position, long size, int maxRegionSize) throws IOException {
+        MutableWordCounter total = new MutableWordCounter();
+        long end = position + size;
+        while (position < end) {
+            // 多映射3个字节，用来判断区域边界是否落在一个多字节字符的中间
+            int mapped = (int) Math.min(end - position, (long) maxRegionSize + 3);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+            int regionSize = Math.min(mapped, maxRegionSize);
+            // 下一个区域不能从UTF-8的后续字节开始，否则那个字符会被拆开
+            while (regionSize < mapped && regionSize > 0 && Utf8.isContinuation(buffer.get(regionSize))) {
+                regionSize--;
+            }
+            if (regionSize == 0) {
+                regionSize = Math.min(mapped, maxRegionSize);
+            }
+            MutableWordCounter region = StreamSupport.intStream(new Utf8ByteBufferSpliterator(buffer, 0, regionSize), true)
+                    .collect(MutableWordCounter::new, MutableWordCounter::accept, MutableWordCounter::combine);
+            total.combine(region);
+            position += regionSize;
+        }
+        return total.getCounter();
+    }
+}
@@ -0,0 +1,64 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.nio.LongBuffer;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 对调用方已经持有的LongBuffer中[start, end)部分求和的Fork/Join任务
+ * <p>
+ * 数据已经在缓冲区（例如堆外的直接缓冲区或者内存映射文件）里的时候，不应该为了求和再把它复制到
+ * long[]中。这里所有子任务共享同一个LongBuffer，只使用绝对位置的get(int)读取，不会修改缓冲区
+ * 的position，因此多个线程同时读取是安全的。
+ */
+public class ForkJoinBufferSumCalculator extends RecursiveTask<Long> {
+    private final LongBuffer buffer;
+    private final int start;
+    private final int end;
+    private final SplitPolicy policy;
+
+    /**
+     * 对buffer中position到limit之间的元素求和
+     *
+     * @param buffer
+     */
+    public ForkJoinBufferSumCalculator(LongBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    public ForkJoinBufferSumCalculator(LongBuffer buffer, int start, int end) {
+        this(buffer, start, end, SplitPolicy.fixed(ForkJoinSumCalculator.THRESHOLD));
+    }
+
+    public ForkJoinBufferSumCalculator(LongBuffer buffer, int start, int end, SplitPolicy policy) {
+        if (start < 0 || start > end || end > buffer.limit()) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", limit: " + buffer.limit());
+        }
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.policy = policy;
+    }
+
+    @Override
+    protected Long compute() {
+        int length = end - start;
+        if (!policy.shouldSplit(length)) {
+            return computeSequentially();
+        }
+        int middle = start + length / 2;
+        ForkJoinBufferSumCalculator leftTask = new ForkJoinBufferSumCalculator(buffer, start, middle, policy);
+        leftTask.fork();
+        ForkJoinBufferSumCalculator rightTask = new ForkJoinBufferSumCalculator(buffer, middle, end, policy);
+        long rightResult = rightTask.compute();
+        long leftResult = leftTask.join();
+        return leftResult + rightResult;
+    }
+
+    private long computeSequentially() {
+        long sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += buffer.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,138 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 管理Fork/Join计算使用的线程池
+ * <p>
+ * 原来的forkJoinSum每次调用都会new ForkJoinPool()，而且从不关闭，每秒调用几千次的话就会不断
+ * 创建新的工作线程，直到这些空闲线程超时退出之前都会一直占用资源。正确的做法是只创建一次线程池
+ * 并在各处重用它：
+ * 1、默认使用ForkJoinPool.commonPool()，它和并行流共享同一组工作线程，不需要管理生命周期；
+ * 2、需要和并行流隔离时使用shared()，它是一个懒加载的单例，并行度可以通过系统属性
+ * com.chenjj.java8.parallelism配置，默认是Runtime.availableProcessors()；
+ * 用shutdownShared()关闭后，下一次调用shared()会重新创建一个新的线程池。
+ */
+public final class ForkJoinPools {
+    public static final String PARALLELISM_PROPERTY = "com.chenjj.java8.parallelism";
+
+    private static ForkJoinPool shared;
+
+    private ForkJoinPools() {
+    }
+
+    /**
+     * 返回共享的线程池，第一次调用时创建
+     *
+     * @return
+     */
+    public static synchronized ForkJoinPool shared() {
+        if (shared == null || shared.isShutdown()) {
+            int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
+            shared = new ForkJoinPool(parallelism);
+        }
+        return shared;
+    }
+
+    /**
+     * 关闭共享线程池，等待已经提交的任务在timeout内完成
+     *
+     * @param timeout
+     * @param unit
+     * @return 如果线程池已经终止（或者从未创建过）返回true，超时返回false
+     * @throws InterruptedException
+     */
+    public static boolean shutdownShared(long timeout, TimeUnit unit) throws InterruptedException {
+        ForkJoinPool pool;
+        synchronized (ForkJoinPools.class) {
+            pool = shared;
+            shared = null;
+        }
+        if (pool == null) {
+            return true;
+        }
+        pool.shutdown();
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * 获取线程池当前状态的快照
+     *
+     * @param pool
+     * @return
+     */
+    public static Stats stats(ForkJoinPool pool) {
+        return new Stats(pool.getParallelism(), pool.getPoolSize(), pool.getActiveThreadCount(),
+                pool.getRunningThreadCount(), pool.getQueuedTaskCount(), pool.getQueuedSubmissionCount(),
+                pool.getStealCount());
+    }
+
+    /**
+     * ForkJoinPool的状态快照。这些值都是ForkJoinPool给出的估计值，只适合用于监控和诊断
+     */
+    public static final class Stats {
+        private final int parallelism;
+        private final int poolSize;
+        private final int activeThreadCount;
+        private final int runningThreadCount;
+        private final long queuedTaskCount;
+        private final int queuedSubmissionCount;
+        private final long stealCount;
+
+        private Stats(int parallelism, int poolSize, int activeThreadCount, int runningThreadCount,
+                      long queuedTaskCount, int queuedSubmissionCount, long stealCount) {
+            this.parallelism = parallelism;
+            this.poolSize = poolSize;
+            this.activeThreadCount = activeThreadCount;
+            this.runningThreadCount = runningThreadCount;
+            this.queuedTaskCount = queuedTaskCount;
+            this.queuedSubmissionCount = queuedSubmissionCount;
+            this.stealCount = stealCount;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getActiveThreadCount() {
+            return activeThreadCount;
+        }
+
+        public int getRunningThreadCount() {
+            return runningThreadCount;
+        }
+
+        public long getQueuedTaskCount() {
+            return queuedTaskCount;
+        }
+
+        public int getQueuedSubmissionCount() {
+            return queuedSubmissionCount;
+        }
+
+        /**
+         * 线程池创建以来累计的任务窃取次数，两次快照相减就是这段时间内的窃取次数
+         *
+         * @return
+         */
+        public long getStealCount() {
+            return stealCount;
+        }
+
+        @Override
+        public String toString() {
+            return "ForkJoinPool{parallelism=" + parallelism +
+                    ", poolSize=" + poolSize +
+                    ", active=" + activeThreadCount +
+                    ", running=" + runningThreadCount +
+                    ", queuedTasks=" + queuedTaskCount +
+                    ", queuedSubmissions=" + queuedSubmissionCount +
+                    ", steals=" + stealCount + "}";
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 对区间[start, end)内的所有long求和的Fork/Join任务
+ * <p>
+ * ForkJoinSumCalculator必须先把1~n放进一个long[]里才能开始求和，n=10^9时光这个数组就要占用8G
+ * 的堆内存。而求和的数字本身就是连续的区间，完全不需要物化：子任务只需要记住自己负责的区间上下界，
+ * 拆分时把区间一分为二即可，整个计算过程除了任务对象本身外不再分配任何内存。
+ */
+public class ForkJoinRangeSumCalculator extends RecursiveTask<Long> {
+    // 子任务负责的区间，包含start，不包含end
+    private final long start;
+    private final long end;
+    private final SplitPolicy policy;
+
+    public ForkJoinRangeSumCalculator(long start, long end) {
+        this(start, end, SplitPolicy.fixed(ForkJoinSumCalculator.THRESHOLD));
+    }
+
+    public ForkJoinRangeSumCalculator(long start, long end, SplitPolicy policy) {
+        if (start > end) {
+            throw new IllegalArgumentException("start(" + start + ") > end(" + end + ")");
+        }
+        this.start = start;
+        this.end = end;
+        this.policy = policy;
+    }
+
+    @Override
+    protected Long compute() {
+        long length = end - start;
+        if (!policy.shouldSplit(length)) {
+            return computeSequentially();
+        }
+        long middle = start + length / 2;
+        ForkJoinRangeSumCalculator leftTask = new ForkJoinRangeSumCalculator(start, middle, policy);
+        leftTask.fork();
+        ForkJoinRangeSumCalculator rightTask = new ForkJoinRangeSumCalculator(middle, end, policy);
+        long rightResult = rightTask.compute();
+        long leftResult = leftTask.join();
+        return leftResult + rightResult;
+    }
+
+    private long computeSequentially() {
+        long sum = 0;
+        for (long i = start; i < end; i++) {
+            sum += i;
+        }
+        return sum;
+    }
+}
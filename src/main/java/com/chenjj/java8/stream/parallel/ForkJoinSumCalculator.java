@@ -1,9 +1,9 @@
 package com.chenjj.java8.stream.parallel;
 
+import java.nio.LongBuffer;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveTask;
-import java.util.stream.LongStream;
 
 /**
  * 使用Fork/Join框架对long[]数组求和
@@ -36,7 +36,9 @@ public class ForkJoinSumCalculator extends RecursiveTask<Long> {
     // 子任务处理的数组的起始和终止位置
     private final int start;
     private final int end;
-    // 不再将任务分解为子任务的数组大小
+    // 决定子任务是否继续拆分
+    private final SplitPolicy policy;
+    // 不再将任务分解为子任务的数组大小，SplitPolicy.fixed的默认阈值，同时也是默认策略中叶子任务的最小大小
     public static final long THRESHOLD = 10_000;
 
     // 公共构造方法用于创建主任务
@@ -44,27 +46,36 @@ public class ForkJoinSumCalculator extends RecursiveTask<Long> {
         this(numbers, 0, numbers.length);
     }
 
-    // 私有构造方法用于以递归方式为主任务创建子任务
-    private ForkJoinSumCalculator(long[] numbers, int start, int end) {
+    // 对调用方数组的一个切片[start, end)求和
+    public ForkJoinSumCalculator(long[] numbers, int start, int end) {
+        this(numbers, start, end, SplitPolicy.fixed(THRESHOLD));
+    }
+
+    // 指定拆分策略，也用于以递归方式为主任务创建子任务
+    public ForkJoinSumCalculator(long[] numbers, int start, int end, SplitPolicy policy) {
+        if (start < 0 || start > end || end > numbers.length) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + numbers.length);
+        }
         this.numbers = numbers;
         this.start = start;
         this.end = end;
+        this.policy = policy;
     }
 
     @Override
     protected Long compute() {
         // 该任务负责求和部分的大小
         int length = end - start;
-        // 如果小于等于阈值，顺序计算结果
-        if (length <= THRESHOLD) {
+        // 如果拆分策略认为不值得再拆分，顺序计算结果
+        if (!policy.shouldSplit(length)) {
             return computeSequentially();
         }
         // 创建一个子任务来为数组的前一半求和
-        ForkJoinSumCalculator leftTask = new ForkJoinSumCalculator(numbers, start, start + length / 2);
+        ForkJoinSumCalculator leftTask = new ForkJoinSumCalculator(numbers, start, start + length / 2, policy);
         // 利用另一个ForkJoinPool线程异步执行新创建的子任务
         leftTask.fork();
         // 创建一个子任务来为数组的后一半求和
-        ForkJoinSumCalculator rightTask = new ForkJoinSumCalculator(numbers, start + length / 2, end);
+        ForkJoinSumCalculator rightTask = new ForkJoinSumCalculator(numbers, start + length / 2, end, policy);
         // 同步执行第二个子任务，有可能允许进一步递归划分
         long rightResult = rightTask.compute();
         // 读取第一个子任务的结果，如果尚未完成就等待
@@ -75,18 +86,97 @@ public class ForkJoinSumCalculator extends RecursiveTask<Long> {
     /**
      * 请注意在实际应用时，使用多个ForkJoinPool是没有什么意义的。正是出于这个原因，一
      * 般来说把它实例化一次，然后把实例保存在静态字段中，使之成为单例，这样就可以在软件中任
-     * 何部分方便地重用了。这里创建时用了其默认的无参数构造函数，这意味着想让线程池使用JVM
-     * 能够使用的所有处理器。更确切地说，该构造函数将使用Runtime.availableProcessors的
-     * 返回值来决定线程池使用的线程数。请注意availableProcessors方法虽然看起来是处理器，
+     * 何部分方便地重用了。以前这里每次调用都会new ForkJoinPool()并且从不关闭，调用频繁时
+     * 会不断创建新的工作线程；现在默认使用ForkJoinPool.commonPool()，需要隔离时可以传入
+     * ForkJoinPools.shared()或者调用方自己管理的线程池。commonPool默认的并行度是
+     * Runtime.availableProcessors() - 1，请注意availableProcessors方法虽然看起来是处理器，
      * 但它实际上返回的是可用内核的数量，包括超线程生成的虚拟内核。
+     * <p>
+     * 以前这里会先用LongStream.rangeClosed(1, n).toArray()把所有数字放进数组，n=10^9时需要8G
+     * 的堆内存。现在改为ForkJoinRangeSumCalculator直接按区间上下界拆分，不再物化数组。
+     * 拆分阈值由SplitPolicy.defaultPolicy根据n和线程池的并行度推导，而不是固定的THRESHOLD。
      *
      * @param n
      * @return
      */
     public static long forkJoinSum(long n) {
-        long[] numbers = LongStream.rangeClosed(1, n).toArray();
-        ForkJoinTask<Long> task = new ForkJoinSumCalculator(numbers);
-        return new ForkJoinPool().invoke(task);
+        return forkJoinSum(n, ForkJoinPool.commonPool());
+    }
+
+    public static long forkJoinSum(long n, ForkJoinPool pool) {
+        return forkJoinSum(n, SplitPolicy.defaultPolicy(n, pool.getParallelism()), pool);
+    }
+
+    /**
+     * 使用指定的拆分策略对1~n求和
+     *
+     * @param n
+     * @param policy
+     * @return
+     */
+    public static long forkJoinSum(long n, SplitPolicy policy) {
+        return forkJoinSum(n, policy, ForkJoinPool.commonPool());
+    }
+
+    public static long forkJoinSum(long n, SplitPolicy policy, ForkJoinPool pool) {
+        // 和LongStream.rangeClosed(1, n)一样，n小于1时是空区间
+        if (n < 1) {
+            return 0;
+        }
+        // 区间的上界不包含在内，n为Long.MAX_VALUE时n + 1会溢出，最后一个数单独加上
+        if (n == Long.MAX_VALUE) {
+            return pool.invoke(new ForkJoinRangeSumCalculator(1, n, policy)) + n;
+        }
+        ForkJoinTask<Long> task = new ForkJoinRangeSumCalculator(1, n + 1, policy);
+        return pool.invoke(task);
+    }
+
+    /**
+     * 对调用方已有数组的切片[start, end)求和，不复制数据
+     *
+     * @param numbers
+     * @param start
+     * @param end
+     * @return
+     */
+    public static long forkJoinSum(long[] numbers, int start, int end) {
+        return forkJoinSum(numbers, start, end, ForkJoinPool.commonPool());
+    }
+
+    public static long forkJoinSum(long[] numbers, int start, int end, ForkJoinPool pool) {
+        return forkJoinSum(numbers, start, end, SplitPolicy.defaultPolicy(end - start, pool.getParallelism()), pool);
+    }
+
+    public static long forkJoinSum(long[] numbers, int start, int end, SplitPolicy policy) {
+        return forkJoinSum(numbers, start, end, policy, ForkJoinPool.commonPool());
+    }
+
+    public static long forkJoinSum(long[] numbers, int start, int end, SplitPolicy policy, ForkJoinPool pool) {
+        ForkJoinTask<Long> task = new ForkJoinSumCalculator(numbers, start, end, policy);
+        return pool.invoke(task);
+    }
+
+    /**
+     * 对LongBuffer中position到limit之间的元素求和，不复制数据，也不修改buffer的position
+     *
+     * @param buffer
+     * @return
+     */
+    public static long forkJoinSum(LongBuffer buffer) {
+        return forkJoinSum(buffer, ForkJoinPool.commonPool());
+    }
+
+    public static long forkJoinSum(LongBuffer buffer, ForkJoinPool pool) {
+        return forkJoinSum(buffer, SplitPolicy.defaultPolicy(buffer.remaining(), pool.getParallelism()), pool);
+    }
+
+    public static long forkJoinSum(LongBuffer buffer, SplitPolicy policy) {
+        return forkJoinSum(buffer, policy, ForkJoinPool.commonPool());
+    }
+
+    public static long forkJoinSum(LongBuffer buffer, SplitPolicy policy, ForkJoinPool pool) {
+        ForkJoinTask<Long> task = new ForkJoinBufferSumCalculator(buffer, buffer.position(), buffer.limit(), policy);
+        return pool.invoke(task);
     }
 
     /**
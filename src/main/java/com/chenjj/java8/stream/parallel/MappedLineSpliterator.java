@@ -0,0 +1,101 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * 按行遍历ByteBuffer中[index, fence)区间的UTF-8文本
+ * <p>
+ * 和BufferedReader.readLine一样，行结束符可以是\n、\r或者\r\n，返回的内容不包含行结束符，
+ * 最后一行后面没有结束符也算一行。
+ * 1、每个Spliterator有自己的一个Utf8Line，每一行都解码到这个对象里再交给下游，不分配String，
+ * 下游需要保留某一行时调用toString复制；
+ * 2、拆分时从中间向后找一个\n，在它后面拆开，子Spliterator共享同一个ByteBuffer，只记录字节偏移；
+ * 3、行数在扫描之前是未知的，所以不是SIZED的，estimateSize返回剩余的字节数。
+ */
+public class MappedLineSpliterator implements Spliterator<CharSequence> {
+    // 小于这个字节数就不再拆分
+    static final int MIN_SPLIT_SIZE = 1 << 16;
+
+    private final ByteBuffer buffer;
+    private int index;
+    private final int fence;
+    private final Utf8Line line = new Utf8Line();
+
+    public MappedLineSpliterator(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    public MappedLineSpliterator(ByteBuffer buffer, int from, int to) {
+        if (from < 0 || from > to || to > buffer.limit()) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", limit: " + buffer.limit());
+        }
+        this.buffer = buffer;
+        this.index = from;
+        this.fence = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super CharSequence> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(nextLine());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super CharSequence> action) {
+        while (index < fence) {
+            action.accept(nextLine());
+        }
+    }
+
+    private Utf8Line nextLine() {
+        ByteBuffer buf = buffer;
+        int hi = fence;
+        int start = index;
+        int i = start;
+        byte b = 0;
+        while (i < hi && (b = buf.get(i)) != '\n' && b != '\r') {
+            i++;
+        }
+        line.decode(buf, start, i);
+        if (i < hi) {
+            i++;
+            if (b == '\r' && i < hi && buf.get(i) == '\n') {
+                i++;
+            }
+        }
+        index = i;
+        return line;
+    }
+
+    @Override
+    public Spliterator<CharSequence> trySplit() {
+        int size = fence - index;
+        if (size < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        // 在\n之后拆分，\r\n不会被拆开，前一半的最后一行也是完整的
+        for (int splitPos = index + size / 2; splitPos < fence - 1; splitPos++) {
+            if (buffer.get(splitPos) == '\n') {
+                MappedLineSpliterator prefix = new MappedLineSpliterator(buffer, index, splitPos + 1);
+                index = splitPos + 1;
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED + NONNULL;
+    }
+}
@@ -0,0 +1,85 @@
+package com.chenjj.java8.stream.parallel;
+
+/**
+ * WordCounter的可变版本，作为并行归约中每个子任务的局部状态
+ * <p>
+ * WordCounter是不可变的，每遇到一次空格和非空格之间的切换就要new一个新的WordCounter，
+ * 再加上Stream&lt;Character&gt;对每个字符装箱，处理几个G的日志时每秒会产生上百万个短命对象。
+ * 这里改为每个子任务只创建一个MutableWordCounter，在它上面原地累积，热点循环里没有任何对象分配。
+ * 配合IntStream.collect(MutableWordCounter::new, MutableWordCounter::accept, MutableWordCounter::combine)使用。
+ * <p>
+ * 和WordCounter.combine不同，这里的combine不要求在空格处拆分：它记录了每一段是否以单词开头、
+ * 是否以单词结尾，如果左边一段以单词结尾而右边一段以单词开头，说明同一个单词被拆成了两半，
+ * 合并时要减去重复数的那一次。所以任意位置拆分都能得到正确的结果，拆分得到的各段也可以来自
+ * 不同的数据源（例如内存映射文件的相邻区域）。
+ */
+public class MutableWordCounter {
+    // 单词数，处理比内存还大的文件时可能超出int的范围
+    private long counter;
+    // 上一个字符是否是空白字符，初始为true，这样第一个非空白字符就会开始一个新单词
+    private boolean lastSpace = true;
+    // 是否还没有处理过任何字符
+    private boolean empty = true;
+    // 第一个字符是否是非空白字符，即这一段是否可能以半个单词开头
+    private boolean startsWithWord;
+
+    public MutableWordCounter() {
+    }
+
+    /**
+     * 由批量扫描（例如AsciiWordCounter）直接得到的状态
+     */
+    MutableWordCounter(long counter, boolean lastSpace, boolean empty, boolean startsWithWord) {
+        this.counter = counter;
+        this.lastSpace = lastSpace;
+        this.empty = empty;
+        this.startsWithWord = startsWithWord;
+    }
+
+    public void accept(int c) {
+        if (Character.isWhitespace(c)) {
+            if (empty) {
+                empty = false;
+            }
+            lastSpace = true;
+        } else {
+            if (empty) {
+                empty = false;
+                startsWithWord = true;
+            }
+            // 上一个字符是空格，而当前遍历的字符不是空格时，将单词计数器加一
+            if (lastSpace) {
+                counter++;
+            }
+            lastSpace = false;
+        }
+    }
+
+    /**
+     * 把紧跟在当前这一段后面的一段合并进来
+     *
+     * @param next
+     */
+    public void combine(MutableWordCounter next) {
+        if (next.empty) {
+            return;
+        }
+        if (empty) {
+            counter = next.counter;
+            lastSpace = next.lastSpace;
+            empty = false;
+            startsWithWord = next.startsWithWord;
+            return;
+        }
+        counter += next.counter;
+        // 一个单词跨越了两段的边界，被数了两次
+        if (!lastSpace && next.startsWithWord) {
+            counter--;
+        }
+        lastSpace = next.lastSpace;
+    }
+
+    public long getCounter() {
+        return counter;
+    }
+}
@@ -0,0 +1,490 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.*;
+
+/**
+ * 把ForkJoinSumCalculator的拆分/计算/合并模式推广为通用的并行归约引擎
+ * <p>
+ * ForkJoinSumCalculator只能对long[]求和，而且它继承的是RecursiveTask&lt;Long&gt;，每个子任务的
+ * 部分结果都要装箱成Long。这里的子任务继承RecursiveAction，部分结果保存在子任务的基本类型字段里，
+ * 合并时直接读取字段，整个归约过程没有任何装箱；热点循环里使用的也都是基本类型特化的函数式接口
+ * （IntBinaryOperator、LongBinaryOperator、DoubleBinaryOperator等）。
+ * <p>
+ * 支持任意满足结合律的归约（求和、最小值、最大值、平方和、自定义幺半群），identity必须是op的
+ * 单位元，因为每个叶子任务都会从identity开始累积。合并时总是op(左边的结果, 右边的结果)，所以op
+ * 只需要满足结合律，不需要满足交换律。
+ * 对于直方图这类需要可变容器的归约，使用collect方法：每个叶子任务用supplier创建自己的容器，
+ * 最后用combiner按从左到右的顺序两两合并，和Stream.collect的语义一样。
+ */
+public final class ParallelReductions {
+
+    private ParallelReductions() {
+    }
+
+    public static void main(String[] args) {
+        int[] ints = new int[10_000_000];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = i % 1000;
+        }
+        // 最小值、最大值
+        System.out.println("min: " + reduce(ints, Integer.MAX_VALUE, Math::min));
+        System.out.println("max: " + reduce(ints, Integer.MIN_VALUE, Math::max));
+        // 平方和，每个元素先映射成long再求和，避免int溢出
+        System.out.println("sum of squares: " + mapReduce(ints, i -> (long) i * i, 0L, Long::sum));
+        // 直方图：每个叶子任务有自己的long[]，合并时逐项相加
+        long[] histogram = collect(ints, () -> new long[10],
+                (h, i) -> h[i / 100]++,
+                (h1, h2) -> {
+                    for (int i = 0; i < h1.length; i++) {
+                        h1[i] += h2[i];
+                    }
+                    return h1;
+                });
+        System.out.println("histogram: " + Arrays.toString(histogram));
+    }
+
+    /*
+     * int[]
+     */
+
+    public static int reduce(int[] array, int identity, IntBinaryOperator op) {
+        return reduce(array, 0, array.length, identity, op, ForkJoinPool.commonPool());
+    }
+
+    public static int reduce(int[] array, int from, int to, int identity, IntBinaryOperator op, ForkJoinPool pool) {
+        return reduce(array, from, to, identity, op, SplitPolicy.defaultPolicy(to - from, pool.getParallelism()), pool);
+    }
+
+    public static int reduce(int[] array, int from, int to, int identity, IntBinaryOperator op,
+                             SplitPolicy policy, ForkJoinPool pool) {
+        checkRange(array.length, from, to);
+        IntReduceTask task = new IntReduceTask(array, from, to, policy, identity, op);
+        pool.invoke(task);
+        return task.result;
+    }
+
+    /**
+     * 先把每个int映射成long再归约，例如平方和、按位统计等int范围内会溢出的归约
+     */
+    public static long mapReduce(int[] array, IntToLongFunction mapper, long identity, LongBinaryOperator op) {
+        return mapReduce(array, 0, array.length, mapper, identity, op, ForkJoinPool.commonPool());
+    }
+
+    public static long mapReduce(int[] array, int from, int to, IntToLongFunction mapper, long identity,
+                                 LongBinaryOperator op, ForkJoinPool pool) {
+        return mapReduce(array, from, to, mapper, identity, op,
+                SplitPolicy.defaultPolicy(to - from, pool.getParallelism()), pool);
+    }
+
+    public static long mapReduce(int[] array, int from, int to, IntToLongFunction mapper, long identity,
+                                 LongBinaryOperator op, SplitPolicy policy, ForkJoinPool pool) {
+        checkRange(array.length, from, to);
+        IntToLongReduceTask task = new IntToLongReduceTask(array, from, to, policy, mapper, identity, op);
+        pool.invoke(task);
+        return task.result;
+    }
+
+    public static <R> R collect(int[] array, Supplier<R> supplier, ObjIntConsumer<R> accumulator, BinaryOperator<R> combiner) {
+        return collect(array, 0, array.length, supplier, accumulator, combiner, ForkJoinPool.commonPool());
+    }
+
+    public static <R> R collect(int[] array, int from, int to, Supplier<R> supplier, ObjIntConsumer<R> accumulator,
+                                BinaryOperator<R> combiner, ForkJoinPool pool) {
+        return collect(array, from, to, supplier, accumulator, combiner,
+                SplitPolicy.defaultPolicy(to - from, pool.getParallelism()), pool);
+    }
+
+    public static <R> R collect(int[] array, int from, int to, Supplier<R> supplier, ObjIntConsumer<R> accumulator,
+                                BinaryOperator<R> combiner, SplitPolicy policy, ForkJoinPool pool) {
+        checkRange(array.length, from, to);
+        IntCollectTask<R> task = new IntCollectTask<>(array, from, to, policy, supplier, accumulator, combiner);
+        pool.invoke(task);
+        return task.result;
+    }
+
+    /*
+     * long[]
+     */
+
+    public static long reduce(long[] array, long identity, LongBinaryOperator op) {
+        return mapReduce(array, LongUnaryOperator.identity(), identity, op);
+    }
+
+    public static long mapReduce(long[] array, LongUnaryOperator mapper, long identity, LongBinaryOperator op) {
+        return mapReduce(array, 0, array.length, mapper, identity, op, ForkJoinPool.commonPool());
+    }
+
+    public static long mapReduce(long[] array, int from, int to, LongUnaryOperator mapper, long identity,
+                                 LongBinaryOperator op, ForkJoinPool pool) {
+        return mapReduce(array, from, to, mapper, identity, op,
+                SplitPolicy.defaultPolicy(to - from, pool.getParallelism()), pool);
+    }
+
+    public static long mapReduce(long[] array, int from, int to, LongUnaryOperator mapper, long identity,
+                                 LongBinaryOperator op, SplitPolicy policy, ForkJoinPool pool) {
+        checkRange(array.length, from, to);
+        LongReduceTask task = new LongReduceTask(array, from, to, policy, mapper, identity, op);
+        pool.invoke(task);
+        return task.result;
+    }
+
+    public static <R> R collect(long[] array, Supplier<R> supplier, ObjLongConsumer<R> accumulator, BinaryOperator<R> combiner) {
+        return collect(array, 0, array.length, supplier, accumulator, combiner, ForkJoinPool.commonPool());
+    }
+
+    public static <R> R collect(long[] array, int from, int to, Supplier<R> supplier, ObjLongConsumer<R> accumulator,
+                                BinaryOperator<R> combiner, ForkJoinPool pool) {
+        return collect(array, from, to, supplier, accumulator, combiner,
+                SplitPolicy.defaultPolicy(to - from, pool.getParallelism()), pool);
+    }
+
+    public static <R> R collect(long[] array, int from, int to, Supplier<R> supplier, ObjLongConsumer<R> accumulator,
+                                BinaryOperator<R> combiner, SplitPolicy policy, ForkJoinPool pool) {
+        checkRange(array.length, from, to);
+        LongCollectTask<R> task = new LongCollectTask<>(array, from, to, policy, supplier, accumulator, combiner);
+        pool.invoke(task);
+        return task.result;
+    }
+
+    /*
+     * double[]
+     */
+
+    public static double reduce(double[] array, double identity, DoubleBinaryOperator op) {
+        return mapReduce(array, DoubleUnaryOperator.identity(), identity, op);
+    }
+
+    public static double mapReduce(double[] array, DoubleUnaryOperator mapper, double identity, DoubleBinaryOperator op) {
+        return mapReduce(array, 0, array.length, mapper, identity, op, ForkJoinPool.commonPool());
+    }
+
+    public static double mapReduce(double[] array, int from, int to, DoubleUnaryOperator mapper, double identity,
+                                   DoubleBinaryOperator op, ForkJoinPool pool) {
+        return mapReduce(array, from, to, mapper, identity, op,
+                SplitPolicy.defaultPolicy(to - from, pool.getParallelism()), pool);
+    }
+
+    public static double mapReduce(double[] array, int from, int to, DoubleUnaryOperator mapper, double identity,
+                                   DoubleBinaryOperator op, SplitPolicy policy, ForkJoinPool pool) {
+        checkRange(array.length, from, to);
+        DoubleReduceTask task = new DoubleReduceTask(array, from, to, policy, mapper, identity, op);
+        pool.invoke(task);
+        return task.result;
+    }
+
+    public static <R> R collect(double[] array, Supplier<R> supplier, ObjDoubleConsumer<R> accumulator, BinaryOperator<R> combiner) {
+        return collect(array, 0, array.length, supplier, accumulator, combiner, ForkJoinPool.commonPool());
+    }
+
+    public static <R> R collect(double[] array, int from, int to, Supplier<R> supplier, ObjDoubleConsumer<R> accumulator,
+                                BinaryOperator<R> combiner, ForkJoinPool pool) {
+        return collect(array, from, to, supplier, accumulator, combiner,
+                SplitPolicy.defaultPolicy(to - from, pool.getParallelism()), pool);
+    }
+
+    public static <R> R collect(double[] array, int from, int to, Supplier<R> supplier, ObjDoubleConsumer<R> accumulator,
+                                BinaryOperator<R> combiner, SplitPolicy policy, ForkJoinPool pool) {
+        checkRange(array.length, from, to);
+        DoubleCollectTask<R> task = new DoubleCollectTask<>(array, from, to, policy, supplier, accumulator, combiner);
+        pool.invoke(task);
+        return task.result;
+    }
+
+    private static void checkRange(int length, int from, int to) {
+        if (from < 0 || from > to || to > length) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + length);
+        }
+    }
+
+    /**
+     * 所有归约任务共用的拆分逻辑，和ForkJoinSumCalculator.compute一样：
+     * 左半部分fork给其他线程，右半部分在当前线程继续计算，最后join左半部分并合并
+     *
+     * @param <T> 具体的任务类型
+     */
+    private abstract static class ReduceTask<T extends ReduceTask<T>> extends RecursiveAction {
+        final int from;
+        final int to;
+        final SplitPolicy policy;
+
+        ReduceTask(int from, int to, SplitPolicy policy) {
+            this.from = from;
+            this.to = to;
+            this.policy = policy;
+        }
+
+        @Override
+        protected final void compute() {
+            int length = to - from;
+            if (!policy.shouldSplit(length)) {
+                computeSequentially();
+                return;
+            }
+            int middle = from + length / 2;
+            T leftTask = subTask(from, middle);
+            leftTask.fork();
+            T rightTask = subTask(middle, to);
+            rightTask.compute();
+            leftTask.join();
+            merge(leftTask, rightTask);
+        }
+
+        abstract T subTask(int from, int to);
+
+        abstract void computeSequentially();
+
+        abstract void merge(T left, T right);
+    }
+
+    private static final class IntReduceTask extends ReduceTask<IntReduceTask> {
+        private final int[] array;
+        private final int identity;
+        private final IntBinaryOperator op;
+        int result;
+
+        IntReduceTask(int[] array, int from, int to, SplitPolicy policy, int identity, IntBinaryOperator op) {
+            super(from, to, policy);
+            this.array = array;
+            this.identity = identity;
+            this.op = op;
+        }
+
+        @Override
+        IntReduceTask subTask(int from, int to) {
+            return new IntReduceTask(array, from, to, policy, identity, op);
+        }
+
+        @Override
+        void computeSequentially() {
+            int acc = identity;
+            for (int i = from; i < to; i++) {
+                acc = op.applyAsInt(acc, array[i]);
+            }
+            result = acc;
+        }
+
+        @Override
+        void merge(IntReduceTask left, IntReduceTask right) {
+            result = op.applyAsInt(left.result, right.result);
+        }
+    }
+
+    private static final class IntToLongReduceTask extends ReduceTask<IntToLongReduceTask> {
+        private final int[] array;
+        private final IntToLongFunction mapper;
+        private final long identity;
+        private final LongBinaryOperator op;
+        long result;
+
+        IntToLongReduceTask(int[] array, int from, int to, SplitPolicy policy,
+                            IntToLongFunction mapper, long identity, LongBinaryOperator op) {
+            super(from, to, policy);
+            this.array = array;
+            this.mapper = mapper;
+            this.identity = identity;
+            this.op = op;
+        }
+
+        @Override
+        IntToLongReduceTask subTask(int from, int to) {
+            return new IntToLongReduceTask(array, from, to, policy, mapper, identity, op);
+        }
+
+        @Override
+        void computeSequentially() {
+            long acc = identity;
+            for (int i = from; i < to; i++) {
+                acc = op.applyAsLong(acc, mapper.applyAsLong(array[i]));
+            }
+            result = acc;
+        }
+
+        @Override
+        void merge(IntToLongReduceTask left, IntToLongReduceTask right) {
+            result = op.applyAsLong(left.result, right.result);
+        }
+    }
+
+    private static final class LongReduceTask extends ReduceTask<LongReduceTask> {
+        private final long[] array;
+        private final LongUnaryOperator mapper;
+        private final long identity;
+        private final LongBinaryOperator op;
+        long result;
+
+        LongReduceTask(long[] array, int from, int to, SplitPolicy policy,
+                       LongUnaryOperator mapper, long identity, LongBinaryOperator op) {
+            super(from, to, policy);
+            this.array = array;
+            this.mapper = mapper;
+            this.identity = identity;
+            this.op = op;
+        }
+
+        @Override
+        LongReduceTask subTask(int from, int to) {
+            return new LongReduceTask(array, from, to, policy, mapper, identity, op);
+        }
+
+        @Override
+        void computeSequentially() {
+            long acc = identity;
+            for (int i = from; i < to; i++) {
+                acc = op.applyAsLong(acc, mapper.applyAsLong(array[i]));
+            }
+            result = acc;
+        }
+
+        @Override
+        void merge(LongReduceTask left, LongReduceTask right) {
+            result = op.applyAsLong(left.result, right.result);
+        }
+    }
+
+    private static final class DoubleReduceTask extends ReduceTask<DoubleReduceTask> {
+        private final double[] array;
+        private final DoubleUnaryOperator mapper;
+        private final double identity;
+        private final DoubleBinaryOperator op;
+        double result;
+
+        DoubleReduceTask(double[] array, int from, int to, SplitPolicy policy,
+                         DoubleUnaryOperator mapper, double identity, DoubleBinaryOperator op) {
+            super(from, to, policy);
+            this.array = array;
+            this.mapper = mapper;
+            this.identity = identity;
+            this.op = op;
+        }
+
+        @Override
+        DoubleReduceTask subTask(int from, int to) {
+            return new DoubleReduceTask(array, from, to, policy, mapper, identity, op);
+        }
+
+        @Override
+        void computeSequentially() {
+            double acc = identity;
+            for (int i = from; i < to; i++) {
+                acc = op.applyAsDouble(acc, mapper.applyAsDouble(array[i]));
+            }
+            result = acc;
+        }
+
+        @Override
+        void merge(DoubleReduceTask left, DoubleReduceTask right) {
+            result = op.applyAsDouble(left.result, right.result);
+        }
+    }
+
+    private static final class IntCollectTask<R> extends ReduceTask<IntCollectTask<R>> {
+        private final int[] array;
+        private final Supplier<R> supplier;
+        private final ObjIntConsumer<R> accumulator;
+        private final BinaryOperator<R> combiner;
+        R result;
+
+        IntCollectTask(int[] array, int from, int to, SplitPolicy policy,
+                       Supplier<R> supplier, ObjIntConsumer<R> accumulator, BinaryOperator<R> combiner) {
+            super(from, to, policy);
+            this.array = array;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        IntCollectTask<R> subTask(int from, int to) {
+            return new IntCollectTask<>(array, from, to, policy, supplier, accumulator, combiner);
+        }
+
+        @Override
+        void computeSequentially() {
+            R container = supplier.get();
+            for (int i = from; i < to; i++) {
+                accumulator.accept(container, array[i]);
+            }
+            result = container;
+        }
+
+        @Override
+        void merge(IntCollectTask<R> left, IntCollectTask<R> right) {
+            result = combiner.apply(left.result, right.result);
+        }
+    }
+
+    private static final class LongCollectTask<R> extends ReduceTask<LongCollectTask<R>> {
+        private final long[] array;
+        private final Supplier<R> supplier;
+        private final ObjLongConsumer<R> accumulator;
+        private final BinaryOperator<R> combiner;
+        R result;
+
+        LongCollectTask(long[] array, int from, int to, SplitPolicy policy,
+                        Supplier<R> supplier, ObjLongConsumer<R> accumulator, BinaryOperator<R> combiner) {
+            super(from, to, policy);
+            this.array = array;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        LongCollectTask<R> subTask(int from, int to) {
+            return new LongCollectTask<>(array, from, to, policy, supplier, accumulator, combiner);
+        }
+
+        @Override
+        void computeSequentially() {
+            R container = supplier.get();
+            for (int i = from; i < to; i++) {
+                accumulator.accept(container, array[i]);
+            }
+            result = container;
+        }
+
+        @Override
+        void merge(LongCollectTask<R> left, LongCollectTask<R> right) {
+            result = combiner.apply(left.result, right.result);
+        }
+    }
+
+    private static final class DoubleCollectTask<R> extends ReduceTask<DoubleCollectTask<R>> {
+        private final double[] array;
+        private final Supplier<R> supplier;
+        private final ObjDoubleConsumer<R> accumulator;
+        private final BinaryOperator<R> combiner;
+        R result;
+
+        DoubleCollectTask(double[] array, int from, int to, SplitPolicy policy,
+                          Supplier<R> supplier, ObjDoubleConsumer<R> accumulator, BinaryOperator<R> combiner) {
+            super(from, to, policy);
+            this.array = array;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        DoubleCollectTask<R> subTask(int from, int to) {
+            return new DoubleCollectTask<>(array, from, to, policy, supplier, accumulator, combiner);
+        }
+
+        @Override
+        void computeSequentially() {
+            R container = supplier.get();
+            for (int i = from; i < to; i++) {
+                accumulator.accept(container, array[i]);
+            }
+            result = container;
+        }
+
+        @Override
+        void merge(DoubleCollectTask<R> left, DoubleCollectTask<R> right) {
+            result = combiner.apply(left.result, right.result);
+        }
+    }
+}
@@ -124,10 +124,18 @@ public class ParallelStream {
         return LongStream.rangeClosed(1L, n).parallel().reduce(0L, Long::sum);
     }
 
+    // 直接用等差数列求和公式，O(1)，结果超出long范围时抛出ArithmeticException
+    public static long closedFormSum(long n) {
+        return RangeSums.sumExact(1L, n, 1L);
+    }
+
     /**
      * 测量对前n个自然数求和的函数的性能
      * 这个方法接受一个函数和一个long作为参数。它会对传给方法的long应用函数10次，记录
      * 每次执行的时间（以毫秒为单位），并返回最短的一次执行时间。
+     * <p>
+     * 注意：这里没有预热、没有fork新的JVM，也没有防止JIT删除死码，得到的数字只能粗略参考。
+     * 需要可靠的数据时请运行src/jmh/java下的SumBenchmark（mvn -Pjmh package）。
      *
      * @param adder
      * @param n
@@ -168,6 +176,7 @@ public class ParallelStream {
      * 它会改变多个线程共享的对象的可变状态。要是你想用并行Stream又不想引发类似的意外，就
      * 必须避免这种情况。
      * 记住要避免共享可变状态，确保并行Stream得到正确的结果。
+     * 如果确实需要在forEach中累加，请使用下面的atomicSideEffectSum或stripedSideEffectSum。
      */
     public static long sideEffectSum(long n) {
         Accumulator accumulator = new Accumulator();
@@ -176,4 +185,22 @@ public class ParallelStream {
         return accumulator.total;
     }
 
+    /**
+     * 用AtomicLong累加，结果正确，但所有线程都在同一个变量上CAS，核数多时竞争激烈
+     */
+    public static long atomicSideEffectSum(long n) {
+        AtomicAccumulator accumulator = new AtomicAccumulator();
+        LongStream.rangeClosed(1, n).parallel().forEach(accumulator::add);
+        return accumulator.getTotal();
+    }
+
+    /**
+     * 用分段单元累加，每个线程基本都在自己的Cell上累加，forEach结束后再汇总
+     */
+    public static long stripedSideEffectSum(long n) {
+        StripedAccumulator accumulator = new StripedAccumulator();
+        LongStream.rangeClosed(1, n).parallel().forEach(accumulator::add);
+        return accumulator.getTotal();
+    }
+
 }
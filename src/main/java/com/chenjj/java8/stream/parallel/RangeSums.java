@@ -0,0 +1,124 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.math.BigInteger;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 等差数列求和
+ * <p>
+ * ParallelStream中的iterativeSum、sequentialSum和parallelSum都要做O(n)次加法才能算出1~n的和，
+ * 但first, first + step, first + 2 * step, ... 这样的等差数列根本不需要逐个相加，直接用求和公式
+ * count * first + step * count * (count - 1) / 2 就可以在O(1)时间内得到结果。
+ * 公式中的乘法在区间很大时会超出long的范围，所以这里用Math.multiplyExact等方法检测溢出，
+ * 溢出时改用BigInteger计算。
+ * <p>
+ * 如果要对每个元素先应用一个函数再求和（例如平方和），就没有通用的求和公式了。这时使用
+ * sum(first, last, step, f)：循环展开成4路，每一路有自己的累加器，相邻的4次函数调用之间没有数据依赖，
+ * CPU可以并行执行它们，JIT也更容易把循环向量化。
+ */
+public final class RangeSums {
+
+    private RangeSums() {
+    }
+
+    public static void main(String[] args) {
+        System.out.println(sumExact(1, 10_000_000, 1)); // 50000005000000
+        System.out.println(sum(1, Long.MAX_VALUE, 1)); // 超出long范围，用BigInteger计算
+        System.out.println(sum(1, 10_000_000, 1, i -> i * i)); // 平方和
+    }
+
+    /**
+     * 数列中元素的个数：step大于0时是first到last（包含）之间的递增数列，step小于0时是递减数列。
+     * 方向和step不一致时数列为空，返回0
+     *
+     * @throws ArithmeticException 个数超出long的范围
+     */
+    public static long count(long first, long last, long step) {
+        if (step == 0) {
+            throw new IllegalArgumentException("step must not be zero");
+        }
+        if (step > 0 ? first > last : first < last) {
+            return 0;
+        }
+        // last - first可能溢出，例如first = Long.MIN_VALUE，last = Long.MAX_VALUE
+        return Math.addExact(Math.subtractExact(last, first) / step, 1);
+    }
+
+    /**
+     * 用求和公式计算等差数列的和，结果超出long范围时抛出ArithmeticException
+     *
+     * @param first 第一个元素
+     * @param last  最后一个元素的上界（step小于0时是下界），包含在内
+     * @param step  公差，不能为0
+     * @return
+     * @throws ArithmeticException 计算过程或结果超出long的范围
+     */
+    public static long sumExact(long first, long last, long step) {
+        long count = count(first, last, step);
+        if (count == 0) {
+            return 0;
+        }
+        // count * (count - 1)一定是偶数，先对其中的偶数除以2，避免中间结果不必要地溢出
+        long pairs = (count & 1) == 0
+                ? Math.multiplyExact(count / 2, count - 1)
+                : Math.multiplyExact(count, (count - 1) / 2);
+        return Math.addExact(Math.multiplyExact(count, first), Math.multiplyExact(step, pairs));
+    }
+
+    /**
+     * 用求和公式计算等差数列的和，先尝试用long计算，溢出时改用BigInteger
+     *
+     * @param first
+     * @param last
+     * @param step
+     * @return
+     */
+    public static BigInteger sum(long first, long last, long step) {
+        try {
+            return BigInteger.valueOf(sumExact(first, last, step));
+        } catch (ArithmeticException e) {
+            return bigSum(first, last, step);
+        }
+    }
+
+    private static BigInteger bigSum(long first, long last, long step) {
+        BigInteger bigFirst = BigInteger.valueOf(first);
+        BigInteger bigStep = BigInteger.valueOf(step);
+        BigInteger count = BigInteger.valueOf(last).subtract(bigFirst).divide(bigStep).add(BigInteger.ONE);
+        if (count.signum() <= 0) {
+            return BigInteger.ZERO;
+        }
+        BigInteger pairs = count.multiply(count.subtract(BigInteger.ONE)).shiftRight(1);
+        return count.multiply(bigFirst).add(bigStep.multiply(pairs));
+    }
+
+    /**
+     * 对等差数列中的每个元素应用f之后求和，和iterativeSum一样按long的溢出规则回绕。
+     * 循环展开成4路独立的累加器，最后再把它们加起来
+     *
+     * @param first
+     * @param last
+     * @param step
+     * @param f
+     * @return
+     */
+    public static long sum(long first, long last, long step, LongUnaryOperator f) {
+        long count = count(first, last, step);
+        long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        long i = first;
+        long k = 0;
+        // count最大为Long.MAX_VALUE，所以用count - 3比较，避免k + 3溢出
+        for (; k < count - 3; k += 4) {
+            s0 += f.applyAsLong(i);
+            s1 += f.applyAsLong(i + step);
+            s2 += f.applyAsLong(i + 2 * step);
+            s3 += f.applyAsLong(i + 3 * step);
+            i += 4 * step;
+        }
+        for (; k < count; k++) {
+            s0 += f.applyAsLong(i);
+            i += step;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
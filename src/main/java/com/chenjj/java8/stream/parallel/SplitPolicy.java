@@ -0,0 +1,86 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Fork/Join求和任务的拆分策略：决定一个大小为size的子任务是继续拆分还是直接顺序计算
+ * <p>
+ * 固定的阈值（ForkJoinSumCalculator.THRESHOLD = 10_000）在不同的机器和数据量下表现差别很大：
+ * 64核的机器上对大数组会产生大量过小的任务，任务调度的开销超过了计算本身；而小数组即使只有
+ * 两三万个元素也仍然会被拆开。这里提供了三种策略，可以在每次调用时单独指定：
+ * 1、fixed：和原来一样的固定阈值；
+ * 2、byParallelism：阈值 = 总长度 / (并行度 * k)，每个工作线程大约分到k个任务，既能让
+ * 工作窃取平衡负载，又不会产生过多的任务，同时不小于minLeafSize，避免小数组被无谓地拆分；
+ * 3、surplus：根据ForkJoinTask.getSurplusQueuedTaskCount()判断当前线程队列中是否已经有足够多的
+ * 任务等待被窃取，只有在其他线程“饿着”的时候才继续拆分。这种启发式做法来自
+ * ForkJoinTask.getSurplusQueuedTaskCount的文档。
+ * 注意Arrays.parallelSort和并行流内部的任务（AbstractTask、ForEachOps）都不是这样做的，
+ * 它们按固定的粒度拆分（元素个数 / (并行度 * 4)，Arrays.parallelSort还要求不小于8192），
+ * 更接近上面的byParallelism。
+ */
+@FunctionalInterface
+public interface SplitPolicy {
+    /**
+     * 由执行子任务的ForkJoinPool工作线程调用
+     *
+     * @param size 当前子任务负责的元素个数
+     * @return true表示继续拆分，false表示顺序计算
+     */
+    boolean shouldSplit(long size);
+
+    /**
+     * 固定阈值，子任务大小超过threshold时才拆分
+     *
+     * @param threshold
+     * @return
+     */
+    static SplitPolicy fixed(long threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        return size -> size > threshold;
+    }
+
+    /**
+     * 根据总长度和并行度推导阈值：max(minLeafSize, totalSize / (parallelism * k))
+     *
+     * @param totalSize   要处理的元素总数
+     * @param parallelism 执行任务的ForkJoinPool的并行度
+     * @param k           每个工作线程期望分到的任务数，一般取4~8
+     * @param minLeafSize 叶子任务的最小大小
+     * @return
+     */
+    static SplitPolicy byParallelism(long totalSize, int parallelism, int k, long minLeafSize) {
+        if (parallelism < 1 || k < 1) {
+            throw new IllegalArgumentException("parallelism: " + parallelism + ", k: " + k);
+        }
+        long target = totalSize / ((long) parallelism * k);
+        return fixed(Math.max(minLeafSize, target));
+    }
+
+    /**
+     * 当前工作线程队列中多余的任务（即尚未被其他线程窃取的任务数减去空闲线程的估计数）不超过
+     * maxSurplus，并且子任务大于minLeafSize时才拆分
+     *
+     * @param maxSurplus  一般取2~3
+     * @param minLeafSize 叶子任务的最小大小
+     * @return
+     */
+    static SplitPolicy surplus(int maxSurplus, long minLeafSize) {
+        if (minLeafSize < 1) {
+            throw new IllegalArgumentException("minLeafSize must be positive: " + minLeafSize);
+        }
+        return size -> size > minLeafSize && ForkJoinTask.getSurplusQueuedTaskCount() <= maxSurplus;
+    }
+
+    /**
+     * 默认策略：每个工作线程分到4个任务，叶子任务不小于ForkJoinSumCalculator.THRESHOLD
+     *
+     * @param totalSize
+     * @param parallelism
+     * @return
+     */
+    static SplitPolicy defaultPolicy(long totalSize, int parallelism) {
+        return byParallelism(totalSize, parallelism, 4, ForkJoinSumCalculator.THRESHOLD);
+    }
+}
@@ -0,0 +1,101 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 可选的Spliterator跟踪器，用来诊断拆分是否均衡
+ * <p>
+ * 以前WordCounterSpliterator在tryAdvance、trySplit和estimateSize里每次都调用System.out.println，
+ * 所有工作线程都要争抢System.out的锁，结果并行版本比顺序版本还慢。现在改为：
+ * 不传跟踪器时Spliterator不做任何额外的工作；传入跟踪器时，Spliterator只在拆分和遍历结束时
+ * 各通知一次，遍历过程中不做任何记录（处理的元素个数由遍历前后的位置相减得到）。
+ * 所有记录在运行结束后通过getSplitCount、getRecords、getElementsByThread和report查看。
+ */
+public class SplitTracer {
+    private final LongAdder splits = new LongAdder();
+    private final ConcurrentLinkedQueue<SplitRecord> records = new ConcurrentLinkedQueue<>();
+
+    /**
+     * trySplit成功拆分出一个新的Spliterator
+     */
+    public void onSplit() {
+        splits.increment();
+    }
+
+    /**
+     * 一个Spliterator遍历结束，由执行遍历的线程调用
+     *
+     * @param elements 这个Spliterator处理的元素个数
+     */
+    public void onFinish(long elements) {
+        records.add(new SplitRecord(elements, Thread.currentThread().getName()));
+    }
+
+    public long getSplitCount() {
+        return splits.sum();
+    }
+
+    public List<SplitRecord> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    /**
+     * 按线程汇总处理的元素个数
+     *
+     * @return
+     */
+    public Map<String, Long> getElementsByThread() {
+        Map<String, Long> result = new TreeMap<>();
+        for (SplitRecord record : records) {
+            result.merge(record.getThreadName(), record.getElements(), Long::sum);
+        }
+        return result;
+    }
+
+    public String report() {
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        long total = 0;
+        for (SplitRecord record : records) {
+            min = Math.min(min, record.getElements());
+            max = Math.max(max, record.getElements());
+            total += record.getElements();
+        }
+        int leaves = records.size();
+        return "splits=" + getSplitCount() +
+                ", leaves=" + leaves +
+                ", elements=" + total +
+                ", min=" + (leaves == 0 ? 0 : min) +
+                ", max=" + max +
+                ", avg=" + (leaves == 0 ? 0 : total / leaves) +
+                ", byThread=" + getElementsByThread();
+    }
+
+    public static final class SplitRecord {
+        private final long elements;
+        private final String threadName;
+
+        SplitRecord(long elements, String threadName) {
+            this.elements = elements;
+            this.threadName = threadName;
+        }
+
+        public long getElements() {
+            return elements;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        @Override
+        public String toString() {
+            return threadName + ": " + elements;
+        }
+    }
+}
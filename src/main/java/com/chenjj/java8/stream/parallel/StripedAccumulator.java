@@ -0,0 +1,29 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用分段单元（striped cells）实现的线程安全累加器
+ * <p>
+ * 底层是java.util.concurrent.atomic.LongAdder：没有竞争时直接CAS一个base字段；一旦CAS失败，
+ * 就按线程的探针哈希值（每个线程一个，冲突后重新散列）把累加分散到一组Cell上，每个Cell单独占一个
+ * 缓存行，Cell的个数随着竞争增加，最多到CPU个数。这样高并发下每个线程基本都在自己的Cell上累加，
+ * 读取总数时再把base和所有Cell加起来。
+ * 代价是getTotal()不是一个原子快照：在还有线程调用add的时候读取，得到的只是一个近似值。
+ * 所以应该在并行操作结束（例如forEach返回）之后再读取。
+ */
+public class StripedAccumulator {
+    private final LongAdder total = new LongAdder();
+
+    public void add(long value) {
+        total.add(value);
+    }
+
+    public long getTotal() {
+        return total.sum();
+    }
+
+    public void reset() {
+        total.reset();
+    }
+}
@@ -0,0 +1,31 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * StripedAccumulator的推广：用任意的运算代替加法，例如Math::max、Math::min
+ * <p>
+ * 底层是java.util.concurrent.atomic.LongAccumulator，和LongAdder一样把竞争分散到多个Cell上。
+ * 因为各个Cell的合并顺序是不确定的，op必须同时满足结合律和交换律，并且没有副作用；
+ * identity必须是op的单位元（求和是0，求最大值是Long.MIN_VALUE）。
+ */
+public class StripedOperatorAccumulator {
+    private final LongAccumulator accumulator;
+
+    public StripedOperatorAccumulator(LongBinaryOperator op, long identity) {
+        this.accumulator = new LongAccumulator(op, identity);
+    }
+
+    public void add(long value) {
+        accumulator.accumulate(value);
+    }
+
+    public long getTotal() {
+        return accumulator.get();
+    }
+
+    public void reset() {
+        accumulator.reset();
+    }
+}
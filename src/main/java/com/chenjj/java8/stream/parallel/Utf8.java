@@ -0,0 +1,102 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 直接在ByteBuffer上逐个解码UTF-8码点，不经过CharsetDecoder，也不分配任何对象
+ * <p>
+ * decode的结果把码点和消耗的字节数打包在一个long里（高32位是字节数，低32位是码点），
+ * 用codePoint和length取出。遇到非法或者被截断的字节序列时返回U+FFFD（REPLACEMENT），
+ * 只消耗1个字节，和CharsetDecoder的REPLACE模式一样从下一个字节继续解码。
+ * <p>
+ * UTF-8的一个重要性质：多字节序列中的每个字节的最高位都是1，因此ASCII字节（包括空格、换行等）
+ * 永远不会出现在多字节序列中间。在ASCII空白字节处拆分字节流是安全的，不会把一个字符拆成两半。
+ */
+public final class Utf8 {
+    public static final int REPLACEMENT = 0xFFFD;
+
+    private Utf8() {
+    }
+
+    /**
+     * 解码buf中从index开始、不超过limit的一个码点，使用绝对位置读取，不修改buf的position
+     *
+     * @param buf
+     * @param index
+     * @param limit
+     * @return 打包后的码点和字节数
+     */
+    public static long decode(ByteBuffer buf, int index, int limit) {
+        int b0 = buf.get(index);
+        if (b0 >= 0) {
+            return pack(b0, 1);
+        }
+        int length;
+        int codePoint;
+        int min;
+        if ((b0 & 0xE0) == 0xC0) {
+            length = 2;
+            codePoint = b0 & 0x1F;
+            min = 0x80;
+        } else if ((b0 & 0xF0) == 0xE0) {
+            length = 3;
+            codePoint = b0 & 0x0F;
+            min = 0x800;
+        } else if ((b0 & 0xF8) == 0xF0) {
+            length = 4;
+            codePoint = b0 & 0x07;
+            min = 0x10000;
+        } else {
+            // 孤立的后续字节或者非法的首字节
+            return pack(REPLACEMENT, 1);
+        }
+        if (index + length > limit) {
+            return pack(REPLACEMENT, 1);
+        }
+        for (int i = 1; i < length; i++) {
+            int b = buf.get(index + i);
+            if ((b & 0xC0) != 0x80) {
+                return pack(REPLACEMENT, 1);
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        // 过长编码、代理区的码点以及超出Unicode范围的码点都不合法
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return pack(REPLACEMENT, 1);
+        }
+        return pack(codePoint, length);
+    }
+
+    public static int codePoint(long decoded) {
+        return (int) decoded;
+    }
+
+    public static int length(long decoded) {
+        return (int) (decoded >>> 32);
+    }
+
+    /**
+     * b是不是UTF-8多字节序列中的后续字节（10xxxxxx）
+     *
+     * @param b
+     * @return
+     */
+    public static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * b是不是Character.isWhitespace认为的ASCII空白字符：\t、\n、\u000B、\f、\r、0x1C~0x1F和空格
+     *
+     * @param b
+     * @return
+     */
+    public static boolean isAsciiWhitespace(byte b) {
+        return (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x20);
+    }
+
+    private static long pack(int codePoint, int length) {
+        return ((long) length << 32) | (codePoint & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,88 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.nio.ByteBuffer;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * 把ByteBuffer中[index, fence)区间的UTF-8字节逐个解码成码点的Spliterator.OfInt
+ * <p>
+ * 和WordCounterSpliterator一样只在空白处拆分，不同的是：
+ * 1、拆分时只是记录字节偏移，所有子Spliterator共享同一个ByteBuffer（例如MappedByteBuffer），
+ * 不会复制任何数据；
+ * 2、在ASCII空白字节处拆分，UTF-8的多字节序列中不可能出现ASCII字节，所以不会把字符拆成两半；
+ * 3、遍历时用绝对位置读取，按需解码，不会把整个缓冲区先解码成String。
+ * 元素个数（码点个数）在解码之前是未知的，所以这个Spliterator不是SIZED的，estimateSize返回剩余的字节数。
+ */
+public class Utf8ByteBufferSpliterator implements Spliterator.OfInt {
+    // 小于这个字节数就不再拆分
+    static final int MIN_SPLIT_SIZE = 1 << 16;
+
+    private final ByteBuffer buffer;
+    private int index;
+    private final int fence;
+
+    public Utf8ByteBufferSpliterator(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    public Utf8ByteBufferSpliterator(ByteBuffer buffer, int from, int to) {
+        if (from < 0 || from > to || to > buffer.limit()) {
+            throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", limit: " + buffer.limit());
+        }
+        this.buffer = buffer;
+        this.index = from;
+        this.fence = to;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        if (index >= fence) {
+            return false;
+        }
+        long decoded = Utf8.decode(buffer, index, fence);
+        index += Utf8.length(decoded);
+        action.accept(Utf8.codePoint(decoded));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        ByteBuffer buf = buffer;
+        int hi = fence;
+        int i = index;
+        index = hi;
+        while (i < hi) {
+            long decoded = Utf8.decode(buf, i, hi);
+            i += Utf8.length(decoded);
+            action.accept(Utf8.codePoint(decoded));
+        }
+    }
+
+    @Override
+    public OfInt trySplit() {
+        int size = fence - index;
+        if (size < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        // 从中间位置开始向后寻找一个ASCII空白字节，避免把单词或者多字节字符拆成两半
+        for (int splitPos = index + size / 2; splitPos < fence; splitPos++) {
+            if (Utf8.isAsciiWhitespace(buffer.get(splitPos))) {
+                Utf8ByteBufferSpliterator prefix = new Utf8ByteBufferSpliterator(buffer, index, splitPos);
+                index = splitPos;
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED + NONNULL + IMMUTABLE;
+    }
+}
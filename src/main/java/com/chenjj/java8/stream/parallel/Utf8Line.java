@@ -0,0 +1,80 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 可以重复使用的一行文本，MappedLineSpliterator每读到一行就把它的UTF-8字节解码到这里
+ * <p>
+ * 解码结果放在一个只会变大的char[]里，读取下一行时直接覆盖，所以遍历过程中不会为每一行分配String。
+ * 代价是：下游拿到的CharSequence只在当前这次回调中有效，要保存下来必须调用toString复制一份。
+ */
+final class Utf8Line implements CharSequence {
+    private char[] chars = new char[128];
+    private int length;
+
+    /**
+     * 把buffer中[from, to)的UTF-8字节解码进来，替换原来的内容
+     *
+     * @param buffer
+     * @param from
+     * @param to
+     * @return 当前对象
+     */
+    Utf8Line decode(ByteBuffer buffer, int from, int to) {
+        // 每个字节最多解码成一个char（4字节序列解码成2个char），所以字节数就是上限
+        if (chars.length < to - from) {
+            chars = new char[Math.max(to - from, chars.length * 2)];
+        }
+        char[] dst = chars;
+        int n = 0;
+        int i = from;
+        // ASCII快速路径：一个字节就是一个char
+        while (i < to) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                break;
+            }
+            dst[n++] = (char) b;
+            i++;
+        }
+        while (i < to) {
+            long decoded = Utf8.decode(buffer, i, to);
+            i += Utf8.length(decoded);
+            n += Character.toChars(Utf8.codePoint(decoded), dst, n);
+        }
+        length = n;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return chars[index];
+    }
+
+    /**
+     * 返回的是复制出来的String，不会随着下一行的读取而改变
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+        return new String(chars, start, end - start);
+    }
+
+    /**
+     * 复制当前行的内容，需要保留这一行时调用
+     */
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
@@ -1,6 +1,8 @@
 package com.chenjj.java8.stream.parallel;
 
+import java.nio.CharBuffer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 以函数式风格重写单词计数器
@@ -50,4 +52,49 @@ public class WordCounter {
                 WordCounter::accumulate, WordCounter::combine);
         return wordCounter.getCounter();
     }
+
+    /**
+     * 直接遍历CharSequence（String、StringBuilder、CharBuffer等）计数，不装箱也不分配对象
+     *
+     * @param chars
+     * @return
+     */
+    public static int countWords(CharSequence chars) {
+        MutableWordCounter counter = new MutableWordCounter();
+        for (int i = 0, n = chars.length(); i < n; i++) {
+            counter.accept(chars.charAt(i));
+        }
+        return Math.toIntExact(counter.getCounter());
+    }
+
+    public static int countWords(char[] chars) {
+        MutableWordCounter counter = new MutableWordCounter();
+        for (char c : chars) {
+            counter.accept(c);
+        }
+        return Math.toIntExact(counter.getCounter());
+    }
+
+    /**
+     * 并行计数：用Spliterator.OfInt遍历基本类型的char，每个子任务只创建一个MutableWordCounter，
+     * 在上面原地累积，最后按顺序合并
+     *
+     * @param chars
+     * @return
+     */
+    public static int countWordsInParallel(CharSequence chars) {
+        return Math.toIntExact(StreamSupport.intStream(new CharSequenceSpliterator(chars), true)
+                .collect(MutableWordCounter::new, MutableWordCounter::accept, MutableWordCounter::combine)
+                .getCounter());
+    }
+
+    /**
+     * 用CharBuffer包装数组，不复制数据
+     *
+     * @param chars
+     * @return
+     */
+    public static int countWordsInParallel(char[] chars) {
+        return countWordsInParallel(CharBuffer.wrap(chars));
+    }
 }
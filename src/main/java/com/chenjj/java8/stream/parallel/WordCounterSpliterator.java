@@ -1,6 +1,7 @@
 package com.chenjj.java8.stream.parallel;
 
 import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -43,13 +44,49 @@ public class WordCounterSpliterator implements Spliterator<Character> {
             " Nel mezzo del cammin di nostra vita " +
                     "mi ritrovai in una selva oscura" +
                     " ché la dritta via era smarrita ";
-    // 要处理的字符串
+    // 每批至少包含的字符数，小于两批时不再拆分
+    static final int MIN_BATCH_SIZE = 10;
+    // 每个工作线程期望分到的批数
+    private static final int BATCHES_PER_THREAD = 4;
+
+    // 要处理的字符串，拆分出来的所有Spliterator共享同一个String，不再用substring复制
     private final String string;
     // 当前字符索引
-    private int currentChar = 0;
+    private int currentChar;
+    // 本Spliterator负责的区间的结束位置（不包含）
+    private final int end;
+    // 每批的字符数，由最初的长度和线程池的并行度决定，拆分出来的Spliterator沿用同一个值
+    private final int batchSize;
+    // 可选的跟踪器，为null时不做任何跟踪
+    private final SplitTracer tracer;
+    // 本Spliterator开始遍历的位置，遍历结束时和currentChar相减就是处理的元素个数
+    private int origin;
 
     public WordCounterSpliterator(String string) {
+        this(string, null);
+    }
+
+    public WordCounterSpliterator(String string, SplitTracer tracer) {
+        this(string, ForkJoinPool.getCommonPoolParallelism(), tracer);
+    }
+
+    /**
+     * @param string
+     * @param parallelism 执行并行流的线程池的并行度
+     * @param tracer      可选的跟踪器，可以为null
+     */
+    public WordCounterSpliterator(String string, int parallelism, SplitTracer tracer) {
+        this(string, 0, string.length(),
+                Math.max(MIN_BATCH_SIZE, string.length() / (Math.max(1, parallelism) * BATCHES_PER_THREAD)), tracer);
+    }
+
+    private WordCounterSpliterator(String string, int start, int end, int batchSize, SplitTracer tracer) {
         this.string = string;
+        this.currentChar = start;
+        this.origin = start;
+        this.end = end;
+        this.batchSize = batchSize;
+        this.tracer = tracer;
     }
 
     public static void main(String[] args) {
@@ -71,6 +108,12 @@ public class WordCounterSpliterator implements Spliterator<Character> {
         // 传给StreamSupport.stream工厂方法的第二个布尔参数意味着你想创建一个并行流。如果是false就不并行处理
         Stream<Character> stream1 = StreamSupport.stream(spliterator, true);
         System.out.println("Found " + WordCounter.countWords(stream1) + " words");
+
+        // 需要诊断拆分是否均衡时传入SplitTracer，运行结束后查看汇总的结果
+        SplitTracer tracer = new SplitTracer();
+        Stream<Character> stream2 = StreamSupport.stream(new WordCounterSpliterator(SENTENCE, tracer), true);
+        System.out.println("Found " + WordCounter.countWords(stream2) + " words");
+        System.out.println(tracer.report());
     }
 
     /**
@@ -79,44 +122,77 @@ public class WordCounterSpliterator implements Spliterator<Character> {
      * tryAdvance方法把String中当前位置的Character传给了Consumer，并让位置加一。
      * 作为参数传递的Consumer是一个Java内部类，在遍历流时将要处理的Character传给了
      * 一系列要对其执行的函数。这里只有一个归约函数，即WordCounter类的accumulate
-     * 方 法 。 如 果 新 的 指 针 位 置 小 于 String 的 总 长 ， 且 还 有 要 遍 历 的 Character ， 则
-     * tryAdvance返回true。
+     * 方 法 。
+     * 按照Spliterator的约定，只要这次调用处理了一个元素就返回true，没有剩余元素时返回false。
+     * 以前的实现在处理完字符之后返回currentChar < string.length()，处理最后一个字符时就返回了false，
+     * 调用方会认为这次没有处理任何元素；对空字符串调用还会抛出StringIndexOutOfBoundsException。
      *
      * @param action
      * @return
      */
     @Override
     public boolean tryAdvance(Consumer<? super Character> action) {
-        System.out.println("拆分已满足要求,开始处理字符......" + Thread.currentThread().getName());
-        action.accept(string.charAt(currentChar++));
-        // 如果还有字符要处理返回true
-        return currentChar < string.length();
+        if (currentChar < end) {
+            action.accept(string.charAt(currentChar++));
+            return true;
+        }
+        finish();
+        return false;
+    }
+
+    /**
+     * 批量遍历剩下的所有字符，避免每个字符都经过一次tryAdvance的虚方法调用
+     *
+     * @param action
+     */
+    @Override
+    public void forEachRemaining(Consumer<? super Character> action) {
+        String s = string;
+        int hi = end;
+        for (int i = currentChar; i < hi; i++) {
+            action.accept(s.charAt(i));
+        }
+        currentChar = hi;
+        finish();
+    }
+
+    private void finish() {
+        if (tracer != null && origin < end) {
+            tracer.onFinish(currentChar - origin);
+            origin = end;
+        }
     }
 
     /**
      * 拆分以便能并行处理
+     * <p>
+     * 剩下的字符不足两批时不再拆分，每批的大小是 最初的长度 / (并行度 * 4)，这样每个工作线程
+     * 大约分到4批，既能通过工作窃取平衡负载，又不会把字符串拆成大量过小的片段。
+     * 拆分出来的Spliterator只记录区间的起止位置，不再用substring复制字符。
      *
      * @return
      */
     @Override
     public Spliterator<Character> trySplit() {
-        int currentSize = string.length() - currentChar;
-        System.out.println("开始拆分......" + currentSize + " " + Thread.currentThread().getName());
+        int currentSize = end - currentChar;
         /**
          * 返回null表示要解析的String已经足够小，可以顺序处理
          */
-        if (currentSize < 10) {
-            System.out.println("String已经足够小，可以顺序处理......" + currentChar + " " + Thread.currentThread().getName());
+        if (currentSize < 2 * batchSize) {
             return null;
         }
         // 将试图拆分位置设定为要解析的String的中间，这个中间位置对应字符不一定就是空格
-        for (int splitPos = currentSize / 2 + currentChar; splitPos < string.length(); splitPos++) {
+        for (int splitPos = currentSize / 2 + currentChar; splitPos < end; splitPos++) {
             // 一直循环直到找个一个空格，因为要避免把词在中间断开
             if (Character.isWhitespace(string.charAt(splitPos))) {
                 //创 建 一 个 新WordCounterSpliterator来 解 析 String从 开 始 到 拆 分位置的部分,重复这个过程进行拆分
-                Spliterator<Character> spliterator = new WordCounterSpliterator(string.substring(currentChar, splitPos));
+                Spliterator<Character> spliterator = new WordCounterSpliterator(string, currentChar, splitPos, batchSize, tracer);
                 // 将当前WordCounterSpliterator的起始位置设为拆分位置，重复这个过程继续拆分
                 currentChar = splitPos;
+                origin = splitPos;
+                if (tracer != null) {
+                    tracer.onSplit();
+                }
                 return spliterator;
             }
         }
@@ -130,9 +206,7 @@ public class WordCounterSpliterator implements Spliterator<Character> {
      */
     @Override
     public long estimateSize() {
-        int size = string.length() - currentChar;
-        System.out.println("String剩下多少元素要遍历......" + size + " " + Thread.currentThread().getName());
-        return size;
+        return end - currentChar;
     }
 
     /**
@@ -151,6 +225,10 @@ public class WordCounterSpliterator implements Spliterator<Character> {
 
     /**
      * 常规版本
+     * <p>
+     * 用charAt遍历，不再用toCharArray()把整个字符串复制一遍。ASCII字符直接和空白字符比较，
+     * 只有非ASCII字符才调用完整的Character.isWhitespace。已经是UTF-8字节的数据请使用
+     * AsciiWordCounter，它一次检查8个字节。
      *
      * @param s
      * @return
@@ -158,8 +236,9 @@ public class WordCounterSpliterator implements Spliterator<Character> {
     public static int countWordsIteratively(String s) {
         int counter = 0;
         boolean lastSpace = true;
-        for (char c : s.toCharArray()) {
-            if (Character.isWhitespace(c)) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80 ? (c >= 0x09 && c <= 0x0D) || (c >= 0x1C && c <= 0x20) : Character.isWhitespace(c)) {
                 lastSpace = true;
             } else {
                 // 上一个字符是空格，而当前遍历的字符不是空格时，将单词计数器加一
@@ -0,0 +1,189 @@
+package com.chenjj.java8.stream.parallel;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * 并行统计词频
+ * <p>
+ * WordCounter只能数出有多少个单词，而CreateStream、BuildingStreams中用
+ * lines.flatMap(line -> Arrays.stream(line.split(" "))).distinct().count()统计不同的单词，
+ * 每一行都要分配一个String[]和一串子字符串。这里的做法是：
+ * 1、直接在行（或者整段文本）上按空白字符切分单词，不调用split；
+ * 2、每个工作线程使用自己的WordFrequencyMap作为分片（而不是每个拆分一个），累积时不需要任何同步，
+ * 全部统计完之后再一次性合并。如果每个拆分都有自己的表、再沿着拆分树两两合并，
+ * 不同单词很多时每一层都要把O(不同单词数)个单词重新插入一遍，而按线程分片只需要合并“线程数 - 1”次；
+ * 3、合并后的WordFrequencyMap可以用topK取出出现次数最多的k个单词。
+ */
+public final class WordFrequencies {
+
+    private WordFrequencies() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        WordFrequencyMap frequencies = countLines(Paths.get("data.txt"), Charset.defaultCharset());
+        System.out.println("unique words: " + frequencies.size());
+        System.out.println("top 3: " + frequencies.topK(3));
+    }
+
+    /**
+     * 对文件的每一行并行统计词频
+     *
+     * @param file
+     * @param charset
+     * @return
+     * @throws IOException
+     */
+    public static WordFrequencyMap countLines(Path file, Charset charset) throws IOException {
+        try (Stream<String> lines = Files.lines(file, charset)) {
+            return lines.parallel().collect(collector());
+        }
+    }
+
+    /**
+     * 把流中的每个元素（例如一行文本）切分成单词并统计词频的收集器。
+     * 它是CONCURRENT的，并行流只创建一个累加器Shards，每个线程往Shards中属于自己的WordFrequencyMap里累积，
+     * 在finisher中把所有分片合并成一个
+     *
+     * @return
+     */
+    public static Collector<CharSequence, ?, WordFrequencyMap> collector() {
+        return new Collector<CharSequence, Shards, WordFrequencyMap>() {
+            @Override
+            public Supplier<Shards> supplier() {
+                return Shards::new;
+            }
+
+            @Override
+            public BiConsumer<Shards, CharSequence> accumulator() {
+                return (shards, line) -> shards.local().addWords(line);
+            }
+
+            /**
+             * CONCURRENT的收集器在并行流中只有一个累加器，不会调用combiner
+             */
+            @Override
+            public BinaryOperator<Shards> combiner() {
+                return Shards::addAll;
+            }
+
+            @Override
+            public Function<Shards, WordFrequencyMap> finisher() {
+                return Shards::merge;
+            }
+
+            /**
+             * 词频和单词出现的顺序无关，所以是UNORDERED的；每个线程只写自己的分片，所以可以是CONCURRENT的
+             */
+            @Override
+            public Set<Characteristics> characteristics() {
+                return Collections.unmodifiableSet(EnumSet.of(Characteristics.CONCURRENT, Characteristics.UNORDERED));
+            }
+        };
+    }
+
+    /**
+     * 在公共线程池中并行统计一整段文本的词频，只在空白处拆分，避免把单词拆成两半
+     *
+     * @param text
+     * @return
+     */
+    public static WordFrequencyMap count(CharSequence text) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        SplitPolicy policy = SplitPolicy.defaultPolicy(text.length(), pool.getParallelism());
+        Shards shards = new Shards();
+        pool.invoke(new FrequencyTask(text, 0, text.length(), policy, shards));
+        return shards.merge();
+    }
+
+    /**
+     * 每个线程一个WordFrequencyMap分片
+     */
+    private static final class Shards {
+        private final ConcurrentMap<Thread, WordFrequencyMap> maps = new ConcurrentHashMap<>();
+
+        WordFrequencyMap local() {
+            return maps.computeIfAbsent(Thread.currentThread(), thread -> new WordFrequencyMap());
+        }
+
+        Shards addAll(Shards other) {
+            // 只在顺序地组合两个累加器时调用，这时不会再有线程往other里写；同一个线程的分片要合并，不能互相覆盖
+            other.maps.forEach((thread, map) -> maps.merge(thread, map, (a, b) -> {
+                a.merge(b);
+                return a;
+            }));
+            return this;
+        }
+
+        /**
+         * 所有线程都结束之后调用：以最大的分片为基础，把其余的分片并入它，每个分片只合并一次
+         */
+        WordFrequencyMap merge() {
+            WordFrequencyMap result = null;
+            for (WordFrequencyMap map : maps.values()) {
+                if (result == null || map.size() > result.size()) {
+                    result = map;
+                }
+            }
+            if (result == null) {
+                return new WordFrequencyMap();
+            }
+            for (WordFrequencyMap map : maps.values()) {
+                if (map != result) {
+                    result.merge(map);
+                }
+            }
+            maps.clear();
+            return result;
+        }
+    }
+
+    private static final class FrequencyTask extends RecursiveAction {
+        private final CharSequence text;
+        private final int start;
+        private final int end;
+        private final SplitPolicy policy;
+        private final Shards shards;
+
+        FrequencyTask(CharSequence text, int start, int end, SplitPolicy policy, Shards shards) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.policy = policy;
+            this.shards = shards;
+        }
+
+        @Override
+        protected void compute() {
+            int length = end - start;
+            if (policy.shouldSplit(length)) {
+                // 从中间向后找一个空白字符作为拆分位置
+                for (int splitPos = start + length / 2; splitPos < end; splitPos++) {
+                    if (Character.isWhitespace(text.charAt(splitPos))) {
+                        invokeAll(new FrequencyTask(text, start, splitPos, policy, shards),
+                                new FrequencyTask(text, splitPos, end, policy, shards));
+                        return;
+                    }
+                }
+            }
+            // 叶子任务把单词累积到当前线程的分片里，不再返回自己的表
+            shards.local().addWords(text, start, end);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.chenjj.java8.stream.parallel;
+
+import com.chenjj.java8.stream.TopK;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * 单词到出现次数的开放寻址哈希表
+ * <p>
+ * 和HashMap&lt;String, Integer&gt;相比：
+ * 1、没有Entry对象，也不装箱Integer，单词、次数和哈希值分别保存在三个并行的数组里；
+ * 2、add直接用CharSequence中的[from, to)区间查找，只有第一次遇到某个单词时才创建String，
+ * 重复出现的单词不会分配任何对象；
+ * 3、线性探测，负载因子不超过0.5，查找时基本都只需要访问一两个连续的槽位。
+ * 这个类不是线程安全的，并行统计时每个线程使用自己的实例，最后用merge合并。
+ */
+public class WordFrequencyMap {
+    private static final int DEFAULT_CAPACITY = 64;
+    // 数组长度必须是2的幂，和HashMap一样最大为2^30
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private String[] keys;
+    private int[] counts;
+    private int[] hashes;
+    private int size;
+    private int mask;
+
+    public WordFrequencyMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public WordFrequencyMap(int expectedSize) {
+        int n = Math.max(DEFAULT_CAPACITY, expectedSize);
+        // 负载因子不超过0.5，容量取不小于2 * n的2的幂，先和最大容量比较，避免n * 2溢出
+        int capacity = n >= MAXIMUM_CAPACITY >>> 1 ? MAXIMUM_CAPACITY : Integer.highestOneBit(n * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        counts = new int[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 把text中[from, to)之间的单词的次数加一
+     *
+     * @param text
+     * @param from
+     * @param to
+     */
+    public void add(CharSequence text, int from, int to) {
+        // 和String.hashCode的算法一样，这样才能和已经保存的String比较哈希值
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        int slot = spread(h) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == h && contentEquals(key, text, from, to)) {
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, text.subSequence(from, to).toString(), h, 1);
+    }
+
+    /**
+     * 把word的次数增加count
+     *
+     * @param word
+     * @param count
+     */
+    public void add(String word, int count) {
+        int h = word.hashCode();
+        int slot = spread(h) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == h && key.equals(word)) {
+                counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, word, h, count);
+    }
+
+    /**
+     * 把text中所有以空白字符分隔的单词都加进来，不使用String.split，不创建中间数组
+     *
+     * @param text
+     */
+    public void addWords(CharSequence text) {
+        addWords(text, 0, text.length());
+    }
+
+    public void addWords(CharSequence text, int from, int to) {
+        int wordStart = -1;
+        for (int i = from; i < to; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                if (wordStart >= 0) {
+                    add(text, wordStart, i);
+                    wordStart = -1;
+                }
+            } else if (wordStart < 0) {
+                wordStart = i;
+            }
+        }
+        if (wordStart >= 0) {
+            add(text, wordStart, to);
+        }
+    }
+
+    /**
+     * 把other中的所有单词和次数合并到当前的表中
+     *
+     * @param other
+     */
+    public void merge(WordFrequencyMap other) {
+        String[] otherKeys = other.keys;
+        for (int i = 0; i < otherKeys.length; i++) {
+            if (otherKeys[i] != null) {
+                add(otherKeys[i], other.counts[i]);
+            }
+        }
+    }
+
+    public int get(String word) {
+        int h = word.hashCode();
+        int slot = spread(h) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == h && key.equals(word)) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * 不同单词的个数
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    public void forEach(ObjIntConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * 出现次数最多的k个单词，按次数从多到少排列，次数相同时按单词的字典序排列
+     * <p>
+     * 用TopK.smallestIndexes在槽位下标上选出前k个：堆里只有int下标，时间复杂度O(n log k)，
+     * 只需要O(k)的额外空间，不需要对所有单词排序，不装箱，也只为最后的k个单词创建Entry。
+     *
+     * @param k
+     * @return
+     */
+    public List<Map.Entry<String, Integer>> topK(int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        int[] slots = TopK.smallestIndexes(k, keys.length, slot -> keys[slot] != null,
+                (a, b) -> counts[a] != counts[b] ? Integer.compare(counts[b], counts[a]) : keys[a].compareTo(keys[b]));
+        List<Map.Entry<String, Integer>> result = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(keys[slot], counts[slot]));
+        }
+        return result;
+    }
+
+    private void insert(int slot, String key, int h, int count) {
+        // 已经不能再扩容时至少要留一个空槽，否则查找不存在的单词时线性探测不会结束
+        if (size == keys.length - 1) {
+            throw new IllegalStateException("WordFrequencyMap is full: " + size);
+        }
+        keys[slot] = key;
+        hashes[slot] = h;
+        counts[slot] = count;
+        if (++size > keys.length >>> 1 && keys.length < MAXIMUM_CAPACITY) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        int[] oldHashes = hashes;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = spread(oldHashes[i]) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    // String.hashCode的低位分布不够均匀，乘以黄金分割常数后取高位，再用于线性探测
+    private static int spread(int h) {
+        int x = h * 0x9E3779B9;
+        return x ^ (x >>> 16);
+    }
+
+    private static boolean contentEquals(String key, CharSequence text, int from, int to) {
+        int length = to - from;
+        if (key.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != text.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
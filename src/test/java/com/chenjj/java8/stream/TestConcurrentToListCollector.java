@@ -0,0 +1,73 @@
+package com.chenjj.java8.stream;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestConcurrentToListCollector {
+    private static final int N = 1_000_000;
+    private static final int PARALLELISM = 8;
+
+    /**
+     * 多个线程同时往同一个累加器里追加，结果不保证顺序，但必须恰好包含每个元素，不能丢也不能重复
+     */
+    @Test
+    public void testParallelCollectKeepsEveryElement() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            // 每个值出现三次，同时检查重复的元素
+            List<Integer> collected = pool.submit(() -> IntStream.range(0, 3 * N).parallel()
+                    .mapToObj(i -> i % N)
+                    .collect(new ConcurrentToListCollector<>())).get();
+            List<Integer> presized = pool.submit(() -> ConcurrentToListCollector.toList(
+                    IntStream.range(0, 3 * N).parallel().mapToObj(i -> i % N))).get();
+            List<Integer> expected = IntStream.range(0, 3 * N).mapToObj(i -> i % N)
+                    .sorted().collect(Collectors.toList());
+            Collections.sort(collected);
+            Collections.sort(presized);
+            assertEquals(expected, collected);
+            assertEquals(expected, presized);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 收集结束后工作线程不能再引用任何元素
+     */
+    @Test
+    public void testWorkersDoNotRetainElements() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            List<WeakReference<byte[]>> references = new ArrayList<>();
+            List<byte[]> source = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                byte[] element = new byte[16 * 1024];
+                source.add(element);
+                references.add(new WeakReference<>(element));
+            }
+            List<byte[]> collected = pool.submit(() -> source.parallelStream()
+                    .collect(new ConcurrentToListCollector<>())).get();
+            assertEquals(source.size(), collected.size());
+            source.clear();
+            collected = null;
+            long reachable = references.size();
+            for (int attempt = 0; attempt < 10 && reachable > 0; attempt++) {
+                System.gc();
+                Thread.sleep(20);
+                reachable = references.stream().filter(reference -> reference.get() != null).count();
+            }
+            assertEquals(0, reachable);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.chenjj.java8.stream;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestPrimeNumbersCollector {
+    private static final int N = 2_000_000;
+
+    /**
+     * 并行流会把候选数分给不同的拆分，结果必须和顺序执行完全一样，包括元素的顺序
+     */
+    @Test
+    public void testParallelMatchesSequential() {
+        Map<Boolean, List<Integer>> sequential = IntStream.rangeClosed(2, N).boxed()
+                .collect(new PrimeNumbersCollector());
+        Map<Boolean, List<Integer>> parallel = IntStream.rangeClosed(2, N).boxed().parallel()
+                .collect(new PrimeNumbersCollector(N));
+        assertEquals(sequential.get(true), parallel.get(true));
+        assertEquals(sequential.get(false), parallel.get(false));
+    }
+
+    /**
+     * 小于2的候选数（0、1和负数）在两种模式下都不是质数，而且不会影响后面的判断
+     */
+    @Test
+    public void testCandidatesBelowTwo() {
+        Map<Boolean, List<Integer>> sequential = IntStream.rangeClosed(-10, 100).boxed()
+                .collect(new PrimeNumbersCollector());
+        Map<Boolean, List<Integer>> parallel = IntStream.rangeClosed(-10, 100).boxed().parallel()
+                .collect(new PrimeNumbersCollector(100));
+        List<Integer> primes = PrimeSieve.sieve(100).primes().boxed().collect(Collectors.toList());
+        assertEquals(primes, sequential.get(true));
+        assertEquals(primes, parallel.get(true));
+        assertEquals(sequential.get(false), parallel.get(false));
+    }
+
+    @Test
+    public void testParallelMatchesSieve() {
+        Map<Boolean, List<Integer>> parallel = TestCollect.partitionPrimesInParallel(N);
+        List<Integer> sieved = PrimeSieve.sieve(N).primes().boxed().collect(Collectors.toList());
+        assertEquals(sieved, parallel.get(true));
+        assertEquals(N - 1 - sieved.size(), parallel.get(false).size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSequentialCollectorRejectsCombine() {
+        PrimeNumbersCollector collector = new PrimeNumbersCollector();
+        collector.combiner().apply(collector.supplier().get(), collector.supplier().get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCandidateGreaterThanMax() {
+        IntStream.rangeClosed(2, 100).boxed().collect(new PrimeNumbersCollector(50));
+    }
+}